@@ -21,6 +21,20 @@ javafx {
 	modules("javafx.controls")
 }
 
+sourceSets {
+    // The corpus generator and the load test that drives the analyzer over generated trees.
+    create("loadTest") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+        runtimeClasspath += sourceSets.main.get().output + sourceSets.main.get().runtimeClasspath
+    }
+    // Benchmarks live in their own source set so JMH stays out of the application and test classpaths.
+    // They generate their inputs with the load test's corpus generator.
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath + sourceSets["loadTest"].output
+        runtimeClasspath += sourceSets.main.get().output + sourceSets.main.get().runtimeClasspath + sourceSets["loadTest"].output
+    }
+}
+
 dependencies {
     // Use JUnit Jupiter for testing.
     testImplementation("org.junit.jupiter:junit-jupiter:5.9.3")
@@ -29,6 +43,10 @@ dependencies {
 
     // This dependency is used by the application.
     implementation("com.google.guava:guava:32.1.1-jre")
+
+    // JMH for the benchmarks in src/jmh.
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 // Apply a specific Java toolchain to ease working on different environments.
@@ -43,7 +61,104 @@ application {
     mainClass.set("linecounterapp.App")
 }
 
+// The headless command line tool never loads JavaFX, so its distribution leaves the JavaFX jars out.
+val cliLibraries = configurations.runtimeClasspath.get().filter { !it.name.startsWith("javafx") }
+val cliRuntimeClasspath = files(tasks.jar) + cliLibraries
+
+val cliStartScripts = tasks.register<CreateStartScripts>("cliStartScripts") {
+    description = "Creates start scripts for the headless linecounter command."
+    mainClass.set("linecounterapp.LineCounterCli")
+    applicationName = "linecounter"
+    outputDir = layout.buildDirectory.dir("cliScripts").get().asFile
+    classpath = cliRuntimeClasspath
+    doLast {
+        // Start the JVM from the class data archive made by cliCdsArchive when there is one.
+        // The JVM ignores an archive that doesn't match the jars it is started with.
+        val useArchive = "[ -f \"\$APP_HOME/lib/linecounter.jsa\" ] && " +
+                "LINECOUNTER_OPTS=\"\\\"-XX:SharedArchiveFile=\$APP_HOME/lib/linecounter.jsa\\\" \$LINECOUNTER_OPTS\""
+        val text = unixScript.readText()
+        val appHome = Regex("(?m)^APP_HOME=\\$\\( cd .*$").find(text)
+                ?: throw GradleException("No APP_HOME line in the start script")
+        val end = appHome.range.last + 1
+        unixScript.writeText(text.substring(0, end) + "\n" + useArchive + text.substring(end))
+    }
+}
+
+distributions {
+    // ./gradlew cliDistZip builds linecounter-cli.zip with bin/linecounter.
+    create("cli") {
+        distributionBaseName.set("linecounter-cli")
+        contents {
+            into("bin") {
+                from(cliStartScripts)
+            }
+            into("lib") {
+                from(cliRuntimeClasspath)
+            }
+        }
+    }
+}
+
+tasks.register<JavaExec>("cliCdsArchive") {
+    // ./gradlew cliCdsArchive installs the cli distribution and runs it once over these sources,
+    // dumping the classes it loaded into build/install/linecounter-cli/lib/linecounter.jsa.
+    // A CDS archive is only valid for the jars it was made from, so it is made from the installed ones,
+    // and installing again removes it.
+    group = "distribution"
+    description = "Installs the headless linecounter command with an AppCDS archive for faster startup."
+    val install = tasks.named<Sync>("installCliDist")
+    dependsOn(install)
+    val lib = install.map { File(it.destinationDir, "lib") }
+    classpath = files(provider { cliRuntimeClasspath.map { File(lib.get(), it.name) } }) //in the start script's order
+    mainClass.set("linecounterapp.LineCounterCli")
+    jvmArgumentProviders.add(CommandLineArgumentProvider {
+        listOf("-XX:ArchiveClassesAtExit=" + File(lib.get(), "linecounter.jsa").path)
+    })
+    args("-o", layout.buildDirectory.file("tmp/cdsTrainingReport.txt").get().asFile.path, "src")
+    workingDir = projectDir
+}
+
+tasks.register<JavaExec>("runCli") {
+    // ./gradlew runCli --args="path/to/src"
+    group = "application"
+    description = "Runs the headless linecounter command."
+    classpath = sourceSets.main.get().output + cliLibraries
+    mainClass.set("linecounterapp.LineCounterCli")
+    workingDir = rootDir
+}
+
 tasks.named<Test>("test") {
     // Use JUnit Platform for unit tests.
     useJUnitPlatform()
 }
+
+tasks.register<JavaExec>("jmh") {
+    // Runs the benchmarks with the GC profiler. Pick some with e.g. ./gradlew jmh -PjmhIncludes=LineClassifier
+    group = "verification"
+    description = "Runs the JMH benchmarks in src/jmh."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    workingDir = rootDir
+    args("-prof", "gc", "-rf", "json", "-rff", layout.buildDirectory.file("jmh-result.json").get().asFile.path)
+    val includes = providers.gradleProperty("jmhIncludes")
+    if (includes.isPresent) {
+        args(includes.get())
+    }
+}
+
+tasks.register<JavaExec>("loadTest") {
+    // Analyzes generated trees of increasing size with increasing thread counts, each in a fresh JVM,
+    // and writes throughput, peak RSS and GC time to build/loadTest/scaling.csv. For example
+    // ./gradlew loadTest -PloadTestSizes=1000,10000,60000 -PloadTestThreads=1,4,8 -PloadTestArgs="--pathological 0.01 --huge 0.02"
+    // Generated trees are kept in build/loadTest/corpus, 60000 files with the default settings are about 0.9 GB.
+    group = "verification"
+    description = "Runs the end-to-end scaling load test over generated source trees."
+    classpath = sourceSets["loadTest"].runtimeClasspath
+    mainClass.set("linecounterapp.LoadTest")
+    workingDir = projectDir
+    args("--corpus", layout.buildDirectory.dir("loadTest/corpus").get().asFile.path,
+            "-o", layout.buildDirectory.file("loadTest/scaling.csv").get().asFile.path)
+    providers.gradleProperty("loadTestSizes").orNull?.let { args("--sizes", it) }
+    providers.gradleProperty("loadTestThreads").orNull?.let { args("--threads", it) }
+    providers.gradleProperty("loadTestArgs").orNull?.let { args(it.trim().split(Regex("\\s+"))) }
+}
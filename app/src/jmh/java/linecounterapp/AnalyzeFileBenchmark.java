@@ -0,0 +1,101 @@
+package linecounterapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Throughput of LineCounter.analyzeFile on testfile.java and on generated files of increasing size.
+ * Besides files per second, reports lines and bytes per second through the aux counters.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyzeFileBenchmark {
+	@Param({"testfile", "small", "medium", "huge"})
+	public String input;
+
+	private File file;
+	private long lines;
+	private long bytes;
+
+	@Setup(Level.Trial)
+	public void createInput() throws IOException {
+		if (input.equals("testfile")) {
+			file = new File("testfile.java");
+		}
+		else {
+			String source;
+			switch (input) {
+			case "small":
+				source = new CorpusGenerator(1).generate(10, 20);
+				break;
+			case "medium":
+				source = new CorpusGenerator(2).generate(200, 50);
+				break;
+			default:
+				source = new CorpusGenerator(3).generate(5000, 200);
+				break;
+			}
+			Path path = Files.createTempFile("linecounter-" + input, ".java");
+			Files.writeString(path, source);
+			file = path.toFile();
+		}
+		lines = Files.readAllLines(file.toPath()).size();
+		bytes = file.length();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteInput() throws IOException {
+		if (!input.equals("testfile")) {
+			Files.deleteIfExists(file.toPath());
+		}
+	}
+
+	@Benchmark
+	public LineCounter analyzeFile(Throughput throughput) {
+		LineCounter counter = new LineCounter();
+		counter.analyzeFile(file);
+		throughput.lines += lines;
+		throughput.bytes += bytes;
+		return counter;
+	}
+
+
+	/**
+	 * Lines and bytes processed, reported by JMH as rates.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Throughput {
+		public long lines;
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			lines = 0;
+			bytes = 0;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package linecounterapp;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Cost of classifying a line and asking each of the predicates LineCounter uses, per kind of line.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LineClassifierBenchmark {
+	@Param({"blank", "comment", "method", "control", "statement", "string", "long"})
+	public String kind;
+
+	private String line;
+	private final LineClassifier classifier = new LineClassifier();
+
+	@Setup
+	public void createLine() {
+		switch (kind) {
+		case "blank":
+			line = "\t\t   ";
+			break;
+		case "comment":
+			line = "\t\t// some explanation of the code below";
+			break;
+		case "method":
+			line = "\tpublic static List<String> findNames(Map<String, Integer> counts, int limit) {";
+			break;
+		case "control":
+			line = "\t\t} else if (counts.get(name) > limit && name.length() > 0) {";
+			break;
+		case "statement":
+			line = "\t\t\ttotal += counts.getOrDefault(name, 0) * weight;";
+			break;
+		case "string":
+			line = "\t\tString text = \"{ \" + name + \" }\";";
+			break;
+		default:
+			line = "\tint x = " + "a + ".repeat(2000) + "b;";
+			break;
+		}
+	}
+
+	@Benchmark
+	public boolean classify() {
+		classifier.classify(line);
+		return classifier.isWhitespace();
+	}
+
+	@Benchmark
+	public boolean isSingleLineComment() {
+		classifier.classify(line);
+		return classifier.isSingleLineComment();
+	}
+
+	@Benchmark
+	public boolean isMultiCommentBegin() {
+		classifier.classify(line);
+		return classifier.isMultiCommentBegin();
+	}
+
+	@Benchmark
+	public boolean isMethod() {
+		classifier.classify(line);
+		return classifier.isMethod();
+	}
+
+	@Benchmark
+	public boolean isControlStructure() {
+		classifier.classify(line);
+		return classifier.isControlStructure();
+	}
+
+	@Benchmark
+	public boolean isElse() {
+		classifier.classify(line);
+		return classifier.isElse();
+	}
+
+	@Benchmark
+	public boolean hasOpeningBracket() {
+		classifier.classify(line);
+		return classifier.hasOpeningBracket();
+	}
+
+	@Benchmark
+	public boolean hasClosingBracket() {
+		classifier.classify(line);
+		return classifier.hasClosingBracket();
+	}
+}
@@ -0,0 +1,222 @@
+package linecounterapp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+
+/**
+ * Generates Java-like source for benchmarks and load tests: classes of methods made of statements,
+ * comments, blank lines and nested control structures, alone or as a whole tree of files.
+ * The same seed and settings always give the same text.
+ *
+ * Besides the sizes, the settings control how much is comments, how deeply blocks nest, how often a method
+ * is huge, and how often a line is pathological: far longer than LineCounter.DEFAULT_MAX_LINE_LENGTH,
+ * braces and comment markers inside strings, several blocks on one line, and the like.
+ */
+public class CorpusGenerator {
+	static final int FILES_PER_FOLDER = 100;
+	static final int HUGE_FACTOR = 50;
+	private static final String[] CONTROLS = {"if", "while", "for", "switch"};
+	private static final String[] PATHOLOGICAL = {
+		"String braces = \"{ { } /* not a comment */ // nor this }\";",
+		"char open = '{'; char close = '}'; char quote = '\\'';",
+		"if (a) { b(); } else if (c) { d(); } else { e(); }",
+		"/* if (x) { */ total++; // while (y) {",
+		"String greek = \"\u03b1\u03b2\u03b3 {\u00e9}\"; // \u00fcn\u00efc\u00f6d\u00e9",
+		"for (int i = 0; i < 3; i++) { for (int j = 0; j < 3; j++) { total += i * j; } }",
+		"int[] values = {1, 2, 3}; Runnable r = () -> { total--; };",
+	};
+
+	private final Random random;
+	private int methods = 20; //average number of methods per file
+	private int methodLines = 30; //average number of lines per method body
+	private double commentDensity = 0.1; //share of lines that are comments
+	private int maxNesting = 6; //deepest nesting of blocks inside a method body
+	private double pathologicalRate = 0; //share of lines that are pathological
+	private double hugeMethodRate = 0; //share of methods that are HUGE_FACTOR times longer
+
+	public CorpusGenerator(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * Sets the average number of methods per file generateTree writes. Each file gets between half and one and a half times as many.
+	 */
+	public void setMethods(int methods) {
+		this.methods = methods;
+	}
+
+	/**
+	 * Sets the average number of lines of a method body in generateTree.
+	 */
+	public void setMethodLines(int lines) {
+		this.methodLines = lines;
+	}
+
+	/**
+	 * Sets the share of lines that are line or block comments, from 0 to 1. Methods get a doc comment equally often.
+	 */
+	public void setCommentDensity(double density) {
+		this.commentDensity = density;
+	}
+
+	/**
+	 * Sets how deeply control structures may nest inside a method body.
+	 */
+	public void setMaxNesting(int depth) {
+		this.maxNesting = depth;
+	}
+
+	/**
+	 * Sets the share of lines that are pathological, from 0 to 1.
+	 */
+	public void setPathologicalRate(double rate) {
+		this.pathologicalRate = rate;
+	}
+
+	/**
+	 * Sets the share of methods that are HUGE_FACTOR times longer than the others, from 0 to 1.
+	 */
+	public void setHugeMethodRate(double rate) {
+		this.hugeMethodRate = rate;
+	}
+
+	/**
+	 * @param methods number of methods in the class
+	 * @param linesPerMethod rough number of lines in each method body
+	 * @return source of one class
+	 */
+	public String generate(int methods, int linesPerMethod) {
+		StringBuilder source = new StringBuilder();
+		appendClass(source, "generated", "Generated", methods, linesPerMethod);
+		return source.toString();
+	}
+
+	/**
+	 * Writes a tree of files below root, FILES_PER_FOLDER to a folder, in folders nested two deep.
+	 * @return number of bytes written
+	 */
+	public long generateTree(Path root, int files) throws IOException {
+		long bytes = 0;
+		StringBuilder source = new StringBuilder();
+		for (int file = 0; file < files; file++) {
+			int folder = file / FILES_PER_FOLDER;
+			String packageName = "p"+(folder / FILES_PER_FOLDER)+".q"+(folder % FILES_PER_FOLDER);
+			Path directory = root.resolve(packageName.replace('.', '/'));
+			Files.createDirectories(directory);
+
+			source.setLength(0);
+			int fileMethods = Math.max(1, methods / 2 + random.nextInt(methods + 1));
+			appendClass(source, packageName, "Generated"+file, fileMethods, methodLines);
+			byte[] text = source.toString().getBytes(StandardCharsets.UTF_8);
+			Files.write(directory.resolve("Generated"+file+".java"), text);
+			bytes += text.length;
+		}
+		return bytes;
+	}
+
+	/**
+	 * The settings, for reports.
+	 */
+	@Override
+	public String toString() {
+		return "methods="+methods+" methodLines="+methodLines+" commentDensity="+commentDensity
+				+" maxNesting="+maxNesting+" pathologicalRate="+pathologicalRate+" hugeMethodRate="+hugeMethodRate;
+	}
+
+
+	private void appendClass(StringBuilder source, String packageName, String className, int methods, int linesPerMethod) {
+		source.append("package ").append(packageName).append(";\n\nimport java.util.List;\n\n");
+		source.append("/**\n * Generated for benchmarking.\n */\n");
+		source.append("public class ").append(className).append(" {\n");
+		source.append("\tprivate int total;\n\n");
+
+		for (int m = 0; m < methods; m++) {
+			if (random.nextDouble() < commentDensity) {
+				source.append("\t/**\n\t * Method number ").append(m).append(".\n\t * @param count how many\n\t */\n");
+			}
+			else {
+				source.append("\t// method number ").append(m).append('\n');
+			}
+			int lines = random.nextDouble() < hugeMethodRate ? linesPerMethod * HUGE_FACTOR : linesPerMethod;
+			source.append("\tpublic int method").append(m).append("(int count, List<String> names) {\n");
+			appendBody(source, lines);
+			source.append("\t}\n\n");
+		}
+
+		source.append("}\n");
+	}
+
+	private void appendBody(StringBuilder source, int lines) {
+		int depth = 1;
+		for (int l = 0; l < lines; l++) {
+			double choice = random.nextDouble();
+			if (choice < pathologicalRate) {
+				appendPathological(source, depth, l);
+				continue;
+			}
+			choice = random.nextDouble();
+			if (choice < commentDensity) {
+				if (random.nextInt(4) == 0) {
+					indent(source, depth).append("/*\n");
+					indent(source, depth).append(" * a block comment { about line ").append(l).append('\n');
+					indent(source, depth).append(" */\n");
+				}
+				else {
+					indent(source, depth).append("// a comment about line ").append(l).append('\n');
+				}
+				continue;
+			}
+
+			//the rest is split like the lines of a typical method body
+			int kind = random.nextInt(9);
+			if (kind == 0) {
+				source.append('\n');
+			}
+			else if (kind == 1 && depth < maxNesting) {
+				indent(source, depth).append(CONTROLS[random.nextInt(CONTROLS.length)]).append(" (count > ").append(l).append(") {\n");
+				depth++;
+			}
+			else if (kind == 2 && depth > 1) {
+				depth--;
+				indent(source, depth).append("}\n");
+			}
+			else if (kind == 3) {
+				indent(source, depth).append("names.add(\"value {").append(l).append("}\");\n");
+			}
+			else {
+				indent(source, depth).append("total += count * ").append(random.nextInt(100)).append(";\n");
+			}
+		}
+		while (depth > 1) {
+			depth--;
+			indent(source, depth).append("}\n");
+		}
+		indent(source, 1).append("return total;\n");
+	}
+
+	private void appendPathological(StringBuilder source, int depth, int line) {
+		if (random.nextInt(PATHOLOGICAL.length + 1) == 0) {
+			//one very long line, past the maximum line length
+			indent(source, depth).append("names.add(\"");
+			int length = LineCounter.DEFAULT_MAX_LINE_LENGTH + random.nextInt(LineCounter.DEFAULT_MAX_LINE_LENGTH);
+			for (int i = 0; i < length; i++) {
+				source.append((char)('a' + (line + i) % 26));
+			}
+			source.append("\"); // { not a block\n");
+		}
+		else {
+			indent(source, depth).append(PATHOLOGICAL[random.nextInt(PATHOLOGICAL.length)]).append('\n');
+		}
+	}
+
+	private static StringBuilder indent(StringBuilder source, int depth) {
+		for (int i = 0; i <= depth; i++) {
+			source.append('\t');
+		}
+		return source;
+	}
+}
@@ -0,0 +1,228 @@
+package linecounterapp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * End-to-end load test: analyzes generated trees of increasing size with increasing thread counts,
+ * and writes the throughput, peak resident memory and GC time of each combination as CSV, so they can be plotted as scaling curves.
+ *
+ * Every combination is measured in a JVM of its own, so peak memory and GC time aren't left over from the one before.
+ * That JVM analyzes the tree once to warm up, then repeat times, and reports the median time.
+ * Trees are generated once per size and seed and kept in the corpus folder for later runs.
+ *
+ * Usage: LoadTest [--sizes files,...] [--threads n,...] [--seed n] [--repeat n] [--corpus folder] [-o file.csv] [--jvm option]...
+ *                 [--methods n] [--method-lines n] [--comments share] [--nesting n] [--pathological share] [--huge share]
+ */
+public class LoadTest {
+	private static final String HEADER = "files,megabytes,threads,seconds,files_per_second,megabytes_per_second,speedup,peak_rss_megabytes,gc_millis,gc_count";
+
+	private int[] sizes = {1000, 10000};
+	private int[] threads = {1, 2, 4, Runtime.getRuntime().availableProcessors()};
+	private int repeat = 3;
+	private long seed = 1;
+	private Path corpus = Path.of("build", "loadTest", "corpus");
+	private Path output = Path.of("build", "loadTest", "scaling.csv");
+	private final List<String> jvmOptions = new ArrayList<String>();
+	private final List<String> generatorArgs = new ArrayList<String>(); //part of the tree's folder name, so other settings get other trees
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("--measure")) {
+			measure(Path.of(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+			return;
+		}
+		LoadTest test = new LoadTest();
+		test.parseArguments(args);
+		test.run();
+	}
+
+	private void parseArguments(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (++i == args.length) {
+				throw new IllegalArgumentException("Missing value after "+arg);
+			}
+			String value = args[i];
+			switch (arg) {
+			case "--sizes": sizes = parseList(value); break;
+			case "--threads": threads = parseList(value); break;
+			case "--seed": seed = Long.parseLong(value); break;
+			case "--repeat": repeat = Integer.parseInt(value); break;
+			case "--corpus": corpus = Path.of(value); break;
+			case "-o": output = Path.of(value); break;
+			case "--jvm": jvmOptions.add(value); break;
+			case "--methods": case "--method-lines": case "--comments": case "--nesting": case "--pathological": case "--huge":
+				generatorArgs.add(arg.substring(2));
+				generatorArgs.add(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: "+arg);
+			}
+		}
+	}
+
+	private void run() throws IOException, InterruptedException {
+		Files.createDirectories(output.toAbsolutePath().getParent());
+		try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+			csv.println(HEADER);
+			System.out.println(HEADER);
+			for (int size : sizes) {
+				Path tree = generateTree(size);
+				double firstSeconds = 0;
+				for (int n : threads) {
+					String[] measured = runMeasurement(tree, n).split(",");
+					double seconds = Double.parseDouble(measured[0]);
+					long bytes = Long.parseLong(measured[1]);
+					if (firstSeconds == 0) {
+						firstSeconds = seconds;
+					}
+					double megabytes = bytes / (1024.0 * 1024.0);
+					String row = String.format(Locale.ROOT, "%d,%.1f,%d,%.3f,%.0f,%.1f,%.2f,%s,%s,%s", size, megabytes, n, seconds,
+							size / seconds, megabytes / seconds, firstSeconds / seconds, measured[2], measured[3], measured[4]);
+					csv.println(row);
+					csv.flush();
+					System.out.println(row);
+				}
+			}
+		}
+		System.out.println("Written to "+output);
+	}
+
+	/**
+	 * Generates the tree for a size unless an earlier run left it complete.
+	 */
+	private Path generateTree(int size) throws IOException {
+		String name = "files-"+size+"-seed-"+seed+(generatorArgs.isEmpty() ? "" : "-"+String.join("-", generatorArgs));
+		Path tree = corpus.resolve(name);
+		Path done = tree.resolve("done");
+		if (Files.exists(done)) {
+			return tree;
+		}
+
+		CorpusGenerator generator = new CorpusGenerator(seed);
+		for (int i = 0; i < generatorArgs.size(); i += 2) {
+			String value = generatorArgs.get(i + 1);
+			switch (generatorArgs.get(i)) {
+			case "methods": generator.setMethods(Integer.parseInt(value)); break;
+			case "method-lines": generator.setMethodLines(Integer.parseInt(value)); break;
+			case "comments": generator.setCommentDensity(Double.parseDouble(value)); break;
+			case "nesting": generator.setMaxNesting(Integer.parseInt(value)); break;
+			case "pathological": generator.setPathologicalRate(Double.parseDouble(value)); break;
+			default: generator.setHugeMethodRate(Double.parseDouble(value)); break;
+			}
+		}
+		System.out.println("Generating "+size+" files into "+tree+" ("+generator+")");
+		long bytes = generator.generateTree(tree, size);
+		Files.writeString(done, bytes+"\n");
+		return tree;
+	}
+
+	/**
+	 * Measures one combination in a new JVM.
+	 * @return the line printed by measure
+	 */
+	private String runMeasurement(Path tree, int threads) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(jvmOptions);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(LoadTest.class.getName());
+		command.addAll(Arrays.asList("--measure", tree.toString(), Integer.toString(threads), Integer.toString(repeat)));
+
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		String line;
+		try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			line = out.readLine();
+		}
+		if (process.waitFor() != 0 || line == null) {
+			throw new IOException("Measuring "+tree+" with "+threads+" threads failed with exit code "+process.exitValue());
+		}
+		return line;
+	}
+
+	/**
+	 * Run in the measuring JVM: prints median seconds, bytes of the tree, peak RSS in megabytes, and GC milliseconds and collections
+	 * during the measured analyses.
+	 */
+	private static void measure(Path tree, int threads, int repeat) throws IOException {
+		long bytes = 0;
+		for (Path file : DirectoryAnalyzer.findJavaFiles(tree)) {
+			bytes += Files.size(file);
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			new DirectoryAnalyzer(pool).analyzeDirectory(tree.toFile()); //warm up
+			long gcMillis = -gcMillis(), gcCount = -gcCount();
+			double[] seconds = new double[repeat];
+			for (int i = 0; i < repeat; i++) {
+				long start = System.nanoTime();
+				new DirectoryAnalyzer(pool).analyzeDirectory(tree.toFile());
+				seconds[i] = (System.nanoTime() - start) / 1e9;
+			}
+			gcMillis += gcMillis();
+			gcCount += gcCount();
+			Arrays.sort(seconds);
+
+			System.out.println(seconds[repeat / 2]+","+bytes+","+peakRssMegabytes()+","+gcMillis+","+gcCount);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, collector.getCollectionTime());
+		}
+		return millis;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * Peak resident set size of this process, from /proc on Linux. Elsewhere it falls back to the peak
+	 * heap and non-heap use the JVM knows of, which leaves out the mapped files and native memory.
+	 */
+	private static long peakRssMegabytes() {
+		try {
+			for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+				if (line.startsWith("VmHWM:")) {
+					return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024;
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			//not Linux
+		}
+		long bytes = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			bytes += pool.getPeakUsage().getUsed();
+		}
+		return bytes >> 20;
+	}
+
+	private static int[] parseList(String list) {
+		return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+	}
+}
@@ -0,0 +1,109 @@
+package linecounterapp;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+/**
+ * Counts what every LineCounter in the process has done, and how long each phase took.
+ * Counts are added once per file, so keeping them costs next to nothing while scanning.
+ * The classifier's share of the scan time is estimated by timing one line in SAMPLE_EVERY.
+ *
+ * Call register to make the counts visible over JMX as linecounterapp:type=AnalysisMetrics.
+ * The same phases are also recorded as JFR events, see AnalysisPhaseEvent and FileAnalyzedEvent.
+ */
+public class AnalysisMetrics implements AnalysisMetricsMBean {
+	static final String NAME = "linecounterapp:type=AnalysisMetrics";
+	static final int SAMPLE_EVERY = 64; //lines per timed classification, a power of 2
+
+	private static final AnalysisMetrics INSTANCE = new AnalysisMetrics();
+
+	final LongAdder files = new LongAdder();
+	final LongAdder bytes = new LongAdder();
+	final LongAdder lines = new LongAdder();
+	final LongAdder codeLines = new LongAdder();
+	final LongAdder blankLines = new LongAdder();
+	final LongAdder commentLines = new LongAdder();
+	final LongAdder longLines = new LongAdder();
+	final LongAdder methodHeaders = new LongAdder();
+	final LongAdder controlStructures = new LongAdder();
+	final LongAdder readNanos = new LongAdder();
+	final LongAdder scanNanos = new LongAdder();
+	final LongAdder sampledLines = new LongAdder();
+	final LongAdder sampledClassifyNanos = new LongAdder();
+	final LongAdder mergeNanos = new LongAdder();
+	final LongAdder walkNanos = new LongAdder();
+
+	private AnalysisMetrics() {
+	}
+
+	/**
+	 * The metrics of this process.
+	 */
+	public static AnalysisMetrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server, if that hasn't been done yet.
+	 * @return false if they couldn't be registered
+	 */
+	public static synchronized boolean register() {
+		try {
+			ObjectName name = new ObjectName(NAME);
+			if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+			}
+			return true;
+		} catch (JMException e) {
+			return false;
+		}
+	}
+
+	@Override public long getFiles() { return files.sum(); }
+	@Override public long getBytes() { return bytes.sum(); }
+	@Override public long getLines() { return lines.sum(); }
+	@Override public long getCodeLines() { return codeLines.sum(); }
+	@Override public long getBlankLines() { return blankLines.sum(); }
+	@Override public long getCommentLines() { return commentLines.sum(); }
+	@Override public long getLongLines() { return longLines.sum(); }
+	@Override public long getMethodHeaders() { return methodHeaders.sum(); }
+	@Override public long getControlStructures() { return controlStructures.sum(); }
+	@Override public long getReadNanos() { return readNanos.sum(); }
+	@Override public long getScanNanos() { return scanNanos.sum(); }
+	@Override public long getMergeNanos() { return mergeNanos.sum(); }
+	@Override public long getWalkNanos() { return walkNanos.sum(); }
+
+	@Override
+	public long getClassifyNanos() {
+		long sampled = sampledLines.sum();
+		return sampled == 0 ? 0 : (long)((double)sampledClassifyNanos.sum() * lines.sum() / sampled);
+	}
+
+	@Override
+	public void reset() {
+		for (LongAdder adder : new LongAdder[] {files, bytes, lines, codeLines, blankLines, commentLines, longLines,
+				methodHeaders, controlStructures, readNanos, scanNanos, sampledLines, sampledClassifyNanos, mergeNanos, walkNanos}) {
+			adder.reset();
+		}
+	}
+
+	/**
+	 * The counts on one line, and the time of each phase in milliseconds.
+	 */
+	@Override
+	public String toString() {
+		long scan = getScanNanos();
+		long read = getReadNanos();
+		double seconds = (scan + read) / 1e9;
+		return "Files: "+getFiles()+", bytes: "+getBytes()+", lines: "+getLines()
+				+" (code "+getCodeLines()+", blank "+getBlankLines()+", comment "+getCommentLines()+", long "+getLongLines()+")"
+				+", method headers: "+getMethodHeaders()+", control structures: "+getControlStructures()
+				+"\nRead: "+read/1000000+"ms, scan: "+scan/1000000+"ms (classifier about "+getClassifyNanos()/1000000+"ms)"
+				+", merge: "+getMergeNanos()/1000000+"ms, walk: "+getWalkNanos()/1000000+"ms"
+				+(seconds > 0 ? String.format(", %.1f MB/s per thread", getBytes() / seconds / 1e6) : "");
+	}
+}
@@ -0,0 +1,31 @@
+package linecounterapp;
+
+
+/**
+ * What AnalysisMetrics shows over JMX. Times are in nanoseconds, summed over all threads.
+ */
+public interface AnalysisMetricsMBean {
+	long getFiles();
+	long getBytes();
+	long getLines();
+	long getCodeLines();
+	long getBlankLines();
+	long getCommentLines();
+	long getLongLines();
+	long getMethodHeaders();
+	long getControlStructures();
+
+	/** Time spent opening, reading or mapping files. */
+	long getReadNanos();
+	/** Time spent going through the lines of files, classifying them and keeping track of methods. */
+	long getScanNanos();
+	/** Part of the scan time spent in the line classifier, estimated from a sample of the lines. */
+	long getClassifyNanos();
+	/** Time spent merging the results of files into folder totals. */
+	long getMergeNanos();
+	/** Time spent listing the files of folders. */
+	long getWalkNanos();
+
+	/** Sets every count back to 0. */
+	void reset();
+}
@@ -0,0 +1,61 @@
+package linecounterapp;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * JFR event for one phase of an analysis: reading a file, scanning its lines, or walking a folder.
+ * Only recorded while a recording with the event enabled is running, as with "jcmd &lt;pid&gt; JFR.start".
+ */
+@Name("linecounterapp.AnalysisPhase")
+@Label("Analysis Phase")
+@Category({"Line Counter"})
+@Description("One phase of analyzing a file or folder")
+class AnalysisPhaseEvent extends Event {
+	static final String READ = "read";
+	static final String SCAN = "scan";
+	static final String WALK = "walk";
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Path")
+	String path;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	private transient long startNanos;
+
+	/**
+	 * Creates the event and starts timing the phase.
+	 */
+	static AnalysisPhaseEvent start(String phase, String path) {
+		AnalysisPhaseEvent event = new AnalysisPhaseEvent();
+		event.phase = phase;
+		event.path = path;
+		event.startNanos = System.nanoTime();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends the phase, committing the event if it is being recorded.
+	 * @param bytes bytes the phase handled
+	 * @return nanoseconds since start
+	 */
+	long finish(long bytes) {
+		end();
+		if (shouldCommit()) {
+			this.bytes = bytes;
+			commit();
+		}
+		return System.nanoTime() - startNanos;
+	}
+}
@@ -0,0 +1,93 @@
+package linecounterapp;
+
+import java.io.File;
+import java.io.IOException;
+
+import javafx.concurrent.Task;
+
+
+/**
+ * Analyzes a file, folder or source archive off the FX thread, feeding the tables as it goes and reporting progress in bytes.
+ * Cancelling interrupts the analysis of a file, and stops a folder after the files being read at the time.
+ * The value is the summary to show when it is done.
+ */
+class AnalysisTask extends Task<String> {
+	private final File path;
+	private final TableFeeder feeder;
+	private final DirectoryAnalyzer analyzer; //null unless path is a folder
+	private final ArchiveAnalyzer archiveAnalyzer; //null unless path is an archive
+
+	AnalysisTask(File path, TableFeeder feeder) {
+		this.path = path;
+		this.feeder = feeder;
+		this.analyzer = path.isDirectory() ? new DirectoryAnalyzer() : null;
+		this.archiveAnalyzer = analyzer == null && ArchiveAnalyzer.isArchive(path) ? new ArchiveAnalyzer() : null;
+	}
+
+	@Override
+	protected String call() {
+		LineCounterListener listener = new Forwarder();
+		if (archiveAnalyzer != null) {
+			archiveAnalyzer.setListener(listener);
+			try {
+				return archiveAnalyzer.analyzeArchive(path).getSummary();
+			} catch (IOException e) {
+				return "Could not read archive: "+e.toString();
+			}
+		}
+		if (analyzer == null) {
+			LineCounter counter = new LineCounter();
+			counter.setListener(listener);
+			return counter.analyzeFile(path);
+		}
+
+		analyzer.setListener(listener);
+		try {
+			return analyzer.analyzeDirectory(path).getSummary();
+		} catch (IOException e) {
+			return "Could not read folder: "+e.toString();
+		}
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if (analyzer != null) {
+			analyzer.cancel();
+		}
+		if (archiveAnalyzer != null) {
+			archiveAnalyzer.cancel();
+		}
+		return super.cancel(mayInterruptIfRunning);
+	}
+
+
+	/**
+	 * Passes the analysis events to the feeder, and progress to the task.
+	 */
+	private class Forwarder implements LineCounterListener {
+		@Override
+		public void methodFound(String name, int startLine) {
+			feeder.methodFound(name, startLine);
+		}
+
+		@Override
+		public void methodClosed(String name, int startLine, int endLine, int codeLines) {
+			feeder.methodClosed(name, startLine, endLine, codeLines);
+		}
+
+		@Override
+		public void controlFound(String type) {
+			feeder.controlFound(type);
+		}
+
+		@Override
+		public void lineClassified(int line, boolean code) {
+			feeder.lineClassified(line, code);
+		}
+
+		@Override
+		public void progress(long bytesRead, long bytesTotal) {
+			updateProgress(bytesRead, bytesTotal);
+		}
+	}
+}
@@ -3,32 +3,39 @@ package linecounterapp;
 import java.io.File;
 
 import javafx.application.Application;
-import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
 
 public class App extends Application {
-	TableView<CountValue> methodTable;
-	TableView<CountValue> controlTable;
+	TableView<Integer> methodTable; //items are rows of a ResultRows
+	TableView<Integer> controlTable;
 	private FileChooser filePicker;
+	private DirectoryChooser folderPicker;
 	private Button button; //Choose file button
+	private Button folderButton; //Choose folder button
+	private Button cancelButton;
+	private ProgressBar progressBar;
 	private Text result;
 	private Stage mainstage;
+	private TableFeeder feeder; //fills the tables for the latest analysis
+	private AnalysisTask analysis; //latest analysis, maybe still running
 
 	@Override
 	public void start(Stage stage) {
 		mainstage = stage;
+		AnalysisMetrics.register(); //so a JMX console can watch analyses run
 		initPicker();
 		initTables();
 		
@@ -36,12 +43,17 @@ public class App extends Application {
 		
 		Label itemLabel = new Label("Pick a file:");
 		button = new Button("Browse");
+		folderButton = new Button("Browse Folder");
+		cancelButton = new Button("Cancel");
+		cancelButton.setDisable(true);
+		progressBar = new ProgressBar(0);
+		progressBar.setPrefWidth(300);
 		
 		result = new Text();
 		result.setWrappingWidth(1200);
 		
 		setButtonListener();
-		box.getChildren().addAll(itemLabel, button, result, methodTable, controlTable);
+		box.getChildren().addAll(itemLabel, button, folderButton, progressBar, cancelButton, result, methodTable, controlTable);
 
         Scene scene = new Scene(box, 640, 480);
         
@@ -55,6 +67,10 @@ public class App extends Application {
 		filePicker = new FileChooser();
 		filePicker.setTitle("Pick a .java file");
 		filePicker.getExtensionFilters().add(new ExtensionFilter(".java", "*.java") );
+		filePicker.getExtensionFilters().add(new ExtensionFilter("Source archives", "*.jar", "*.zip") );
+		
+		folderPicker = new DirectoryChooser();
+		folderPicker.setTitle("Pick a folder of .java files");
 	}
 	
 	private void initTables() {
@@ -63,15 +79,15 @@ public class App extends Application {
 		controlTable = new TableView<>();
 		controlTable.setEditable(false);
 		
-		TableColumn<CountValue, String> methodNameCol = new TableColumn<>("Method Name");
+		TableColumn<Integer, String> methodNameCol = new TableColumn<>("Method Name");
 		methodNameCol.setMinWidth(150);
-		TableColumn<CountValue, Integer> methodLengthCol = new TableColumn<>("Number of Lines");
+		TableColumn<Integer, Integer> methodLengthCol = new TableColumn<>("Number of Lines");
 		methodLengthCol.setMinWidth(150);
 		methodTable.getColumns().addAll(methodNameCol, methodLengthCol);
 		
-		TableColumn<CountValue, String> controlNameCol = new TableColumn<>("Control Type");
+		TableColumn<Integer, String> controlNameCol = new TableColumn<>("Control Type");
 		controlNameCol.setMinWidth(150);
-		TableColumn<CountValue, Integer> controlLengthCol = new TableColumn<>("Count");
+		TableColumn<Integer, Integer> controlLengthCol = new TableColumn<>("Count");
 		controlLengthCol.setMinWidth(150);
 		controlTable.getColumns().addAll(controlNameCol, controlLengthCol);
 	}
@@ -82,25 +98,76 @@ public class App extends Application {
     		public void handle(ActionEvent e) {
     			File file = filePicker.showOpenDialog(mainstage);
     			if (file != null) {
-    				LineCounter counter = new LineCounter();
-            		result.textProperty().set(counter.analyzeFile(file));
-            		
-            		ObservableList<CountValue> methodList = counter.getMethodsList();
-            		ObservableList<CountValue> controlList = counter.getControlList();
-            		
-            		methodTable.setItems(methodList);
-            		controlTable.setItems(controlList);
-            		
-            		methodTable.getColumns().get(0).setCellValueFactory(new PropertyValueFactory<>(methodList.get(0).nameProperty().getName()));
-            		methodTable.getColumns().get(1).setCellValueFactory(new PropertyValueFactory<>(methodList.get(0).countProperty().getName()));
-
-            		controlTable.getColumns().get(0).setCellValueFactory(new PropertyValueFactory<>(controlList.get(0).nameProperty().getName()));
-            		controlTable.getColumns().get(1).setCellValueFactory(new PropertyValueFactory<>(controlList.get(0).countProperty().getName()));
+    				analyzeInBackground(file);
     			}
     		}
     	};
     	
     	button.setOnAction(listener);
+    	
+    	EventHandler<ActionEvent> folderListener = new EventHandler<ActionEvent>() {
+    		public void handle(ActionEvent e) {
+    			File folder = folderPicker.showDialog(mainstage);
+    			if (folder != null) {
+    				analyzeInBackground(folder);
+    			}
+    		}
+    	};
+    	
+    	folderButton.setOnAction(folderListener);
+    	
+    	cancelButton.setOnAction(e -> {
+    		if (analysis != null) {
+    			analysis.cancel();
+    		}
+    	});
+	}
+	
+	/**
+	 * Points the tables at a new feeder, so results of an analysis still running elsewhere stop showing.
+	 */
+	private TableFeeder newFeeder() {
+		if (feeder != null) {
+			feeder.stop();
+		}
+		feeder = new TableFeeder(text -> result.textProperty().set(text));
+		feeder.methodRows.show(methodTable);
+		feeder.controlRows.show(controlTable);
+		result.textProperty().set("Reading...");
+		return feeder;
+	}
+	
+	/**
+	 * Analyzes a file or folder off the FX thread, cancelling the analysis before it if that is still running.
+	 */
+	private void analyzeInBackground(File path) {
+		if (analysis != null) {
+			analysis.cancel();
+		}
+		TableFeeder newFeeder = newFeeder();
+		AnalysisTask task = new AnalysisTask(path, newFeeder);
+		analysis = task;
+		
+		task.setOnSucceeded(e -> newFeeder.finish(task.getValue()));
+		task.setOnCancelled(e -> {
+			newFeeder.stop();
+			if (analysis == task) {
+				result.textProperty().set("Analysis cancelled");
+			}
+		});
+		task.setOnFailed(e -> {
+			newFeeder.stop();
+			if (analysis == task) {
+				result.textProperty().set("Could not analyze: "+task.getException());
+			}
+		});
+		
+		progressBar.progressProperty().bind(task.progressProperty());
+		cancelButton.disableProperty().bind(task.runningProperty().not());
+		
+		Thread thread = new Thread(task, "analysis");
+		thread.setDaemon(true);
+		thread.start();
 	}
 
 }
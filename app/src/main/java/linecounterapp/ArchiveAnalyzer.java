@@ -0,0 +1,250 @@
+package linecounterapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+
+/**
+ * Analyzes every .java entry of a .jar or .zip archive, like *-sources.jar files, without extracting it.
+ * Each entry is inflated straight into memory and analyzed from there.
+ * ZipFile reads entries by their offsets, so entries are split between ForkJoin tasks and inflated in parallel.
+ * Archives nested inside the archive aren't looked into.
+ */
+public class ArchiveAnalyzer {
+	private static final int ENTRIES_PER_TASK = 8; //below this many entries a task analyzes them itself instead of splitting
+
+	private final ForkJoinPool pool;
+	private LineCounterListener listener;
+	private int maxLineLength = LineCounter.DEFAULT_MAX_LINE_LENGTH;
+	private boolean keepDetails = true;
+	private volatile boolean cancelled;
+
+	public ArchiveAnalyzer() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public ArchiveAnalyzer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Whether a file is named like an archive this class can read.
+	 */
+	public static boolean isArchive(File file) {
+		String name = file.getName().toLowerCase();
+		return name.endsWith(".jar") || name.endsWith(".zip");
+	}
+
+	/**
+	 * Sends the methods and control structures of each entry to a listener as soon as that entry is done.
+	 * Entries are analyzed in parallel, so the listener has to be thread safe. Lines aren't reported.
+	 * @param listener listener to notify, or null for none
+	 */
+	public void setListener(LineCounterListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets whether the result keeps the methods and control structures of every entry, or only the line and file counts.
+	 * Without them the memory used doesn't grow with the number of entries, and a listener like
+	 * StreamingSummary can keep what is needed of them instead.
+	 */
+	public void setKeepDetails(boolean keep) {
+		this.keepDetails = keep;
+	}
+
+	/**
+	 * Sets the maximum line length every entry is analyzed with, see LineCounter.setMaxLineLength.
+	 */
+	public void setMaxLineLength(int bytes) {
+		this.maxLineLength = bytes;
+	}
+
+	/**
+	 * Stops a running analysis as soon as the entries being read now are done.
+	 * The analyzer stays cancelled, later analyses fail straight away.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Analyzes all .java entries of an archive.
+	 * Method names in the result are prefixed with the entry's name.
+	 * @return Merged counts of every entry
+	 * @throws IOException if the archive can't be opened or an entry can't be inflated
+	 * @throws CancellationException if cancel was called
+	 */
+	public LineCounter analyzeArchive(File archive) throws IOException {
+		return analyzeArchive(archive, null);
+	}
+
+	/**
+	 * Same as analyzeArchive, also handing the counts of each entry to onEntry before its methods are
+	 * prefixed with its name and merged, like the onFile of DirectoryAnalyzer.analyzeDirectory.
+	 * @param onEntry called with each entry's name and counts, from several threads at once and in no particular order
+	 */
+	public LineCounter analyzeArchive(File archive, BiConsumer<String, LineCounter> onEntry) throws IOException {
+		try (ZipFile zip = new ZipFile(archive)) {
+			List<ZipEntry> entries = findJavaEntries(zip);
+			Progress progress = listener == null ? null : new Progress(entries);
+			LineCounter total = pool.invoke(new AnalyzeTask(archive.getPath(), zip, entries, 0, entries.size(), onEntry, progress));
+			if (cancelled) {
+				throw new CancellationException("analysis of "+archive+" was cancelled");
+			}
+			return total;
+		} catch (UncheckedIOException e) {
+			throw e.getCause(); //tasks can't throw IOException themselves
+		}
+	}
+
+	/**
+	 * Lists the .java entries of an archive in order of their names.
+	 */
+	static List<ZipEntry> findJavaEntries(ZipFile zip) {
+		List<ZipEntry> entries = new ArrayList<ZipEntry>();
+		for (Enumeration<? extends ZipEntry> all = zip.entries(); all.hasMoreElements(); ) {
+			ZipEntry entry = all.nextElement();
+			if (!entry.isDirectory() && entry.getName().endsWith(".java")) {
+				entries.add(entry);
+			}
+		}
+		entries.sort(Comparator.comparing(ZipEntry::getName));
+		return entries;
+	}
+
+	/**
+	 * Inflates an entry into buffer, or into a bigger array if it doesn't fit.
+	 * @return the entry's bytes
+	 */
+	static ByteBuffer readEntry(ZipFile zip, ZipEntry entry, byte[] buffer) throws IOException {
+		try (InputStream in = zip.getInputStream(entry)) {
+			long size = entry.getSize(); //-1 if the archive doesn't say
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new IOException("Entry too large: "+entry.getName());
+			}
+			if (size > buffer.length) {
+				buffer = new byte[(int)size];
+			}
+
+			int length = 0;
+			while (true) {
+				if (length == buffer.length) {
+					byte[] grown = new byte[Math.max(buffer.length * 2, 8192)];
+					System.arraycopy(buffer, 0, grown, 0, length);
+					buffer = grown;
+				}
+				int read = in.read(buffer, length, buffer.length - length);
+				if (read < 0) {
+					return ByteBuffer.wrap(buffer, 0, length);
+				}
+				length += read;
+			}
+		}
+	}
+
+
+	/**
+	 * Uncompressed bytes of the entries done so far, for the listener's progress events.
+	 */
+	private class Progress {
+		private final long[] sizes; //by index in entries
+		private final long total;
+		private final AtomicLong done = new AtomicLong();
+
+		Progress(List<ZipEntry> entries) {
+			sizes = new long[entries.size()];
+			long sum = 0;
+			for (int i = 0; i < sizes.length; i++) {
+				sizes[i] = Math.max(entries.get(i).getSize(), 0);
+				sum += sizes[i];
+			}
+			total = sum;
+		}
+
+		void entryDone(int index) {
+			listener.progress(done.addAndGet(sizes[index]), total);
+		}
+	}
+
+	/**
+	 * Analyzes entries[from, to), splitting the range in half until it is small enough.
+	 */
+	private class AnalyzeTask extends RecursiveTask<LineCounter> {
+		private final String archive;
+		private final ZipFile zip;
+		private final List<ZipEntry> entries;
+		private final int from, to;
+		private final BiConsumer<String, LineCounter> onEntry; //null if nobody wants the entries
+		private final Progress progress; //null without a listener
+
+		AnalyzeTask(String archive, ZipFile zip, List<ZipEntry> entries, int from, int to,
+				BiConsumer<String, LineCounter> onEntry, Progress progress) {
+			this.archive = archive;
+			this.zip = zip;
+			this.entries = entries;
+			this.from = from;
+			this.to = to;
+			this.onEntry = onEntry;
+			this.progress = progress;
+		}
+
+		@Override
+		protected LineCounter compute() {
+			if (to - from <= ENTRIES_PER_TASK) {
+				LineCounter total = new LineCounter();
+				byte[] buffer = new byte[64 * 1024]; //reused by the entries that fit
+				LineCounter reused = onEntry == null ? new LineCounter() : null; //onEntry may keep the counters it is given
+				for (int i = from; i < to && !cancelled; i++) {
+					ZipEntry entry = entries.get(i);
+					ByteBuffer bytes;
+					try {
+						bytes = readEntry(zip, entry, buffer);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					if (bytes.array().length > buffer.length) {
+						buffer = bytes.array();
+					}
+
+					LineCounter counter = reused != null ? reused : new LineCounter();
+					counter.reset();
+					counter.setMaxLineLength(maxLineLength);
+					counter.analyzeBytes(bytes, archive+"!/"+entry.getName());
+					if (onEntry != null) {
+						onEntry.accept(entry.getName(), counter);
+					}
+					counter.qualifyMethods(entry.getName());
+					if (listener != null) {
+						counter.replay(listener);
+						progress.entryDone(i);
+					}
+					DirectoryAnalyzer.merge(total, counter, keepDetails);
+				}
+				return total;
+			}
+
+			int middle = (from + to) >>> 1;
+			AnalyzeTask left = new AnalyzeTask(archive, zip, entries, from, middle, onEntry, progress);
+			left.fork();
+			LineCounter right = new AnalyzeTask(archive, zip, entries, middle, to, onEntry, progress).compute();
+			LineCounter total = left.join();
+			DirectoryAnalyzer.merge(total, right, keepDetails);
+			return total;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package linecounterapp;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * Compact binary report, for reading back by programs. Starts with MAGIC, then a series of records,
+ * each a tag byte followed by its fields. Ints are big endian, and strings are an int byte count followed by UTF-8.
+ * <ul>
+ * <li>SECTION: path, files, stripped line count, empty lines, long lines
+ * <li>TABLE: table name, number of columns, the column titles
+ * <li>ROW: name, then one int per value column
+ * <li>END_TABLE: nothing
+ * </ul>
+ */
+class BinaryReportWriter extends ChannelReportWriter {
+	static final int MAGIC = 0x4C435201; //"LCR" and the format version
+	static final int SECTION = 1;
+	static final int TABLE = 2;
+	static final int ROW = 3;
+	static final int END_TABLE = 4;
+
+	private boolean started;
+
+	BinaryReportWriter(WritableByteChannel channel) {
+		super(channel);
+	}
+
+	@Override
+	public void section(String path, String summary, LineCounter counter) throws IOException {
+		start();
+		writeByte(SECTION);
+		writeString(path);
+		writeInt(counter.filecount);
+		writeInt(counter.linecount);
+		writeInt(counter.nonCodeLines);
+		writeInt(counter.longLines);
+	}
+
+	@Override
+	public void beginTable(String table, String title, String... columns) throws IOException {
+		start();
+		writeByte(TABLE);
+		writeString(table);
+		writeInt(columns.length);
+		for (String column : columns) {
+			writeString(column);
+		}
+	}
+
+	@Override
+	public void row(String name, int... values) throws IOException {
+		writeByte(ROW);
+		writeString(name);
+		for (int value : values) {
+			writeInt(value);
+		}
+	}
+
+	@Override
+	public void endTable() throws IOException {
+		writeByte(END_TABLE);
+	}
+
+	private void start() throws IOException {
+		if (!started) {
+			writeInt(MAGIC);
+			started = true;
+		}
+	}
+}
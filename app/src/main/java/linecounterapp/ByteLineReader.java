@@ -0,0 +1,231 @@
+package linecounterapp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Splits UTF-8 encoded bytes into lines without going through a Reader.
+ * Line breaks are found directly in the bytes, using the same separators as Scanner.nextLine():
+ * \r\n, \n, \r, U+0085, U+2028 and U+2029.
+ * Lines made only of ASCII are handed out as a view over the buffer, so nothing is decoded or copied;
+ * other lines are decoded into a reused CharBuffer.
+ * The CharSequence returned by line() is only valid until the next call to nextLine().
+ *
+ * Lines longer than the maximum line length are never decoded; they are handed out as their raw bytes,
+ * one char per byte, which keeps ASCII punctuation where it was.
+ */
+class ByteLineReader {
+	private static final int MAP_THRESHOLD = 1 << 16; //files at least this big are memory mapped instead of read
+
+	private final AsciiLine asciiLine = new AsciiLine();
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private CharBuffer decoded = CharBuffer.allocate(256);
+	private ByteBuffer readBuffer = ByteBuffer.allocate(0); //reused between small files
+
+	private int maxLineLength = Integer.MAX_VALUE; //in bytes
+	private ByteBuffer buffer;
+	private int start; //position the buffer was opened at
+	private int position;
+	private CharSequence line;
+	private boolean longLine;
+
+	/**
+	 * Sets the length in bytes above which lines count as long and aren't decoded.
+	 */
+	void setMaxLineLength(int maxLineLength) {
+		this.maxLineLength = maxLineLength;
+	}
+
+	/**
+	 * Starts reading lines from a file, memory mapping it if it's large.
+	 * @throws IOException if the file can't be opened or is over 2GB
+	 */
+	void open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File too large: "+file);
+			}
+			if (size >= MAP_THRESHOLD) {
+				open(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+				return;
+			}
+
+			if (readBuffer.capacity() < size) {
+				readBuffer = ByteBuffer.allocate(Math.max((int)size, readBuffer.capacity()*2));
+			}
+			readBuffer.clear();
+			while (readBuffer.position() < size && channel.read(readBuffer) >= 0) {
+			}
+			readBuffer.flip();
+			open(readBuffer);
+		}
+	}
+
+	/**
+	 * Starts reading lines from the remaining bytes of a buffer. The buffer's position isn't changed.
+	 */
+	void open(ByteBuffer bytes) {
+		buffer = bytes;
+		start = bytes.position();
+		position = start;
+		line = null;
+	}
+
+	/**
+	 * Advances to the next line.
+	 * @return false if there are no more lines
+	 */
+	boolean nextLine() {
+		int limit = buffer.limit();
+		if (position >= limit) {
+			line = null;
+			return false;
+		}
+
+		int start = position;
+		int end = start;
+		int next = limit;
+		boolean ascii = true;
+		while (end < limit) {
+			byte b = buffer.get(end);
+			if (b == '\n') {
+				next = end + 1;
+				break;
+			}
+			if (b == '\r') {
+				next = (end + 1 < limit && buffer.get(end+1) == '\n') ? end + 2 : end + 1;
+				break;
+			}
+			if (b < 0) {
+				ascii = false;
+				int separator = unicodeSeparatorLength(end, limit);
+				if (separator > 0) {
+					next = end + separator;
+					break;
+				}
+			}
+			end++;
+		}
+		position = next;
+		longLine = end - start > maxLineLength;
+
+		if (ascii || longLine) {
+			asciiLine.set(buffer, start, end - start);
+			line = asciiLine;
+		}
+		else {
+			line = decode(start, end);
+		}
+		return true;
+	}
+
+	/**
+	 * The current line, without its line separator.
+	 */
+	CharSequence line() {
+		return line;
+	}
+
+	/**
+	 * True if the current line is over the maximum line length, and line() gives its raw bytes.
+	 */
+	boolean isLongLine() {
+		return longLine;
+	}
+
+	/**
+	 * Number of bytes read so far, for reporting progress.
+	 */
+	int bytesRead() {
+		return position - start;
+	}
+
+	/**
+	 * Number of bytes there are to read in all.
+	 */
+	int bytesTotal() {
+		return buffer.limit() - start;
+	}
+
+	/**
+	 * Length in bytes of a U+0085, U+2028 or U+2029 starting at index, or 0 if there isn't one.
+	 */
+	private int unicodeSeparatorLength(int index, int limit) {
+		byte b = buffer.get(index);
+		if (b == (byte)0xC2 && index + 1 < limit && buffer.get(index+1) == (byte)0x85) {
+			return 2;
+		}
+		if (b == (byte)0xE2 && index + 2 < limit && buffer.get(index+1) == (byte)0x80) {
+			byte last = buffer.get(index+2);
+			if (last == (byte)0xA8 || last == (byte)0xA9) {
+				return 3;
+			}
+		}
+		return 0;
+	}
+
+	private CharSequence decode(int start, int end) {
+		ByteBuffer bytes = buffer.duplicate();
+		bytes.limit(end).position(start);
+
+		int needed = (int)((end - start) * (double)decoder.maxCharsPerByte()) + 1;
+		if (decoded.capacity() < needed) {
+			decoded = CharBuffer.allocate(needed);
+		}
+		decoded.clear();
+		decoder.reset();
+		decoder.decode(bytes, decoded, true);
+		decoder.flush(decoded);
+		decoded.flip();
+		return decoded;
+	}
+
+
+	/**
+	 * A line of single byte characters read in place from a buffer.
+	 */
+	private static class AsciiLine implements CharSequence {
+		private ByteBuffer buffer;
+		private int start;
+		private int length;
+
+		void set(ByteBuffer buffer, int start, int length) {
+			this.buffer = buffer;
+			this.start = start;
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char)(buffer.get(start + index) & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			byte[] bytes = new byte[to - from];
+			buffer.get(start + from, bytes);
+			return new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+
+		@Override
+		public String toString() {
+			return subSequence(0, length).toString();
+		}
+	}
+}
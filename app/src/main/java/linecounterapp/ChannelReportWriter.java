@@ -0,0 +1,96 @@
+package linecounterapp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Base of the report writers: a fixed buffer in front of a channel, written out whenever it fills up.
+ * Text formats build each line in the reused line builder and hand it over with writeLine.
+ */
+abstract class ChannelReportWriter implements ReportWriter {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	protected final StringBuilder line = new StringBuilder();
+
+	ChannelReportWriter(WritableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * Encodes the line builder and a newline into the buffer, then empties the builder.
+	 */
+	protected void writeLine() throws IOException {
+		line.append('\n');
+		CharBuffer chars = CharBuffer.wrap(line);
+		encoder.reset();
+		while (true) {
+			CoderResult result = encoder.encode(chars, buffer, true);
+			if (result.isOverflow()) {
+				drain();
+			}
+			else if (result.isUnderflow()) {
+				break;
+			}
+			else {
+				result.throwException();
+			}
+		}
+		while (encoder.flush(buffer).isOverflow()) {
+			drain();
+		}
+		line.setLength(0);
+	}
+
+	protected void writeByte(int b) throws IOException {
+		ensureRoom(1);
+		buffer.put((byte)b);
+	}
+
+	protected void writeInt(int value) throws IOException {
+		ensureRoom(4);
+		buffer.putInt(value);
+	}
+
+	/**
+	 * Writes a string as its length in bytes followed by its UTF-8 bytes.
+	 */
+	protected void writeString(String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		writeInt(bytes.length);
+		int written = 0;
+		while (written < bytes.length) {
+			ensureRoom(1);
+			int chunk = Math.min(buffer.remaining(), bytes.length - written);
+			buffer.put(bytes, written, chunk);
+			written += chunk;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		drain();
+	}
+
+	private void ensureRoom(int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			drain();
+		}
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
@@ -0,0 +1,564 @@
+package linecounterapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * Analyzes one huge file on several threads, with exactly the result LineCounter.analyzeFile would give.
+ * The file is cut into chunks at line breaks, and analyzed in three passes:
+ *
+ * 1. Every chunk is classified in parallel into a short of flags per line, plus lists of the lines with
+ *    method headers and control structures. This is where nearly all of the time goes.
+ * 2. Whether each chunk starts inside a multi-line comment is found by composing, chunk after chunk,
+ *    what each one does to that state. The first pass worked that out for both starting states.
+ * 3. The method tracking of readFile is run over every chunk's flags in parallel, guessing that the chunk
+ *    starts outside any method. The chunks are then stitched together in order. Where the guess was wrong,
+ *    the chunk is run again from the real state, but only until both runs are outside a method after
+ *    the same line. From there on they agree, so the rest of the guessed run is used.
+ */
+public class ChunkedFileAnalyzer {
+	/** Files at least this big are worth splitting. */
+	public static final long MIN_SIZE = 16 << 20;
+	private static final int MIN_CHUNK = 1 << 20;
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final int MAX_WINDOW = Integer.MAX_VALUE; //most bytes one mapping can hold
+
+	//flags of a line, from the classifier
+	private static final int WHITESPACE = 1;
+	private static final int SINGLE_COMMENT = 2;
+	private static final int COMMENT_BEGIN = 4;
+	private static final int COMMENT_END = 8;
+	private static final int OPENING = 16;
+	private static final int CLOSING = 32;
+	private static final int METHOD = 64;
+	private static final int SEMICOLON = 128;
+	private static final int CONTROL = 256;
+
+	private final ForkJoinPool pool;
+	private int maxLineLength = LineCounter.DEFAULT_MAX_LINE_LENGTH;
+	private int chunkSize; //0 to pick one from the file size
+	private int windowSize = MAX_WINDOW;
+
+	public ChunkedFileAnalyzer() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public ChunkedFileAnalyzer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Sets the maximum line length, see LineCounter.setMaxLineLength.
+	 */
+	public void setMaxLineLength(int bytes) {
+		this.maxLineLength = bytes;
+	}
+
+	/**
+	 * Sets the size in bytes chunks are cut at, rounded up to the next line break. Mostly for tests.
+	 */
+	void setChunkSize(int bytes) {
+		this.chunkSize = bytes;
+	}
+
+	/**
+	 * Sets the most bytes of a file mapped at once, rounded down to a line break. Mostly for tests.
+	 */
+	void setWindowSize(int bytes) {
+		this.windowSize = bytes;
+	}
+
+	/**
+	 * Analyzes a file, memory mapping it. Files over 2GB are mapped in several windows, each ending at a line break.
+	 * @throws IOException if the file can't be read, or has a line longer than a window
+	 */
+	public LineCounter analyzeFile(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			List<ByteBuffer> windows = new ArrayList<ByteBuffer>();
+			for (long start = 0; start < size; ) {
+				ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+				if (start + window.limit() < size) {
+					//end after the last '\n', like the chunks, so no line is split between windows
+					int end = window.limit();
+					while (end > 0 && window.get(end - 1) != '\n') {
+						end--;
+					}
+					if (end == 0) {
+						throw new IOException("Line longer than "+windowSize+" bytes in "+file);
+					}
+					window.limit(end);
+				}
+				windows.add(window);
+				start += window.limit();
+			}
+			return analyze(windows, file.getPath());
+		}
+	}
+
+	/**
+	 * Analyzes UTF-8 source from the buffer's position to its limit. The position isn't changed.
+	 */
+	public LineCounter analyzeBytes(ByteBuffer bytes) {
+		return analyze(List.of(bytes), "(in memory)");
+	}
+
+	/**
+	 * @param windows consecutive parts of the source, each ending at a line break but the last
+	 * @param path where the bytes came from, for the metrics events
+	 */
+	private LineCounter analyze(List<ByteBuffer> windows, String path) {
+		AnalysisPhaseEvent scan = AnalysisPhaseEvent.start(AnalysisPhaseEvent.SCAN, path);
+		long bytes = 0;
+		for (ByteBuffer window : windows) {
+			bytes += window.remaining();
+		}
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		for (ByteBuffer window : windows) {
+			split(window, bytes, chunks);
+		}
+
+		//pass 1: classify
+		pool.submit(() -> chunks.parallelStream().forEach(Chunk::classify)).join();
+
+		//pass 2: comment state and line numbers at the start of each chunk
+		boolean inComment = false;
+		int lines = 0;
+		for (Chunk chunk : chunks) {
+			chunk.startsInComment = inComment;
+			chunk.lineOffset = lines;
+			inComment = chunk.commentAfter[inComment ? 1 : 0];
+			lines += chunk.lines;
+		}
+
+		//pass 3: guess the method tracking of each chunk, then stitch them together
+		pool.submit(() -> chunks.parallelStream().forEach(chunk -> chunk.guess = guess(chunk))).join();
+		LineCounter counter = stitch(chunks);
+
+		long nanos = scan.finish(bytes);
+		AnalysisMetrics metrics = AnalysisMetrics.get();
+		metrics.scanNanos.add(nanos);
+		metrics.files.increment();
+		metrics.bytes.add(bytes);
+		metrics.lines.add(lines);
+		metrics.codeLines.add(counter.linecount);
+		metrics.longLines.add(counter.longLines);
+		metrics.methodHeaders.add(counter.methods.size());
+		for (Chunk chunk : chunks) {
+			metrics.blankLines.add(chunk.guess.blank);
+			metrics.commentLines.add(chunk.guess.comment);
+		}
+		for (String name : counter.controlCounts.sortedNames()) {
+			metrics.controlStructures.add(counter.controlCounts.get(name));
+		}
+		return counter;
+	}
+
+	/**
+	 * Cuts the bytes into chunks that each end just after a '\n', or at the end, and adds them to chunks.
+	 * No line separator has a '\n' in the middle of it, so the chunks have exactly the lines of the whole.
+	 * @param total bytes of the whole source, which the chunk size is picked from
+	 */
+	private void split(ByteBuffer bytes, long total, List<Chunk> chunks) {
+		int size = chunkSize > 0 ? chunkSize : (int)Math.min(MAX_WINDOW, Math.max(MIN_CHUNK, total / (pool.getParallelism() * CHUNKS_PER_THREAD)));
+		int start = bytes.position();
+		while (start < bytes.limit()) {
+			int end = (int)Math.min((long)start + size, bytes.limit());
+			while (end < bytes.limit() && bytes.get(end - 1) != '\n') {
+				end++;
+			}
+			ByteBuffer slice = bytes.duplicate();
+			slice.limit(end).position(start);
+			chunks.add(new Chunk(slice, maxLineLength));
+			start = end;
+		}
+	}
+
+	/**
+	 * Runs a chunk from outside any method, keeping track of after which lines it is outside one.
+	 */
+	private static Run guess(Chunk chunk) {
+		Run run = new Run(chunk);
+		run.idleAfter = new long[(chunk.lines + 63) >>> 6];
+		for (int line = 0; line < chunk.lines; line++) {
+			run.step(line);
+			if (run.isIdle()) {
+				run.idleAfter[line >>> 6] |= 1L << line;
+			}
+		}
+		return run;
+	}
+
+	/**
+	 * Puts the runs of the chunks together into the counts of the whole file.
+	 */
+	private static LineCounter stitch(List<Chunk> chunks) {
+		LineCounter counter = new LineCounter();
+		counter.filecount = 1;
+		MethodSpans methods = counter.methods;
+
+		Run state = null; //where the previous chunk ended, null when outside any method
+		int open = -1; //span in methods of the method being tracked
+		int lines = 0;
+		for (Chunk chunk : chunks) {
+			Run run = chunk.guess;
+			int from = 0; //first span of the guessed run to use
+			if (state != null) {
+				Run real = new Run(chunk);
+				real.continueFrom(state);
+				int converged = -1;
+				for (int line = 0; line < chunk.lines; line++) {
+					real.step(line);
+					if (real.isIdle() && (run.idleAfter[line >>> 6] & (1L << line)) != 0) {
+						converged = line;
+						break;
+					}
+				}
+				if (converged < 0) {
+					run = real;
+				}
+				else {
+					//the real run up to the converged line, the guess after it
+					while (from < run.spans && run.span(from, Run.START) <= converged) {
+						from++;
+					}
+					for (int entry = 0; entry < chunk.controls && chunk.controlLines[entry] <= converged; entry++) {
+						run.counted[entry] = real.counted[entry];
+					}
+					if (real.closedIncoming) {
+						methods.close(open, chunk.lineOffset + real.incomingEnd + 1, real.incomingCode, real.incomingDepth);
+					}
+					addSpans(methods, chunk, real, 0);
+				}
+			}
+
+			if (run.closedIncoming) {
+				methods.close(open, chunk.lineOffset + run.incomingEnd + 1, run.incomingCode, run.incomingDepth);
+			}
+			int first = methods.size();
+			addSpans(methods, chunk, run, from);
+			if (run.isIdle()) {
+				state = null;
+			}
+			else {
+				state = run;
+				if (run.open != Run.INCOMING) {
+					open = first + run.open - from;
+				}
+			}
+
+			int[] counts = new int[chunk.controlNames.ids()];
+			for (int entry = 0; entry < chunk.controls; entry++) {
+				if (run.counted[entry]) {
+					counts[chunk.controlIds[entry]]++;
+				}
+			}
+			for (int id = 0; id < counts.length; id++) {
+				if (counts[id] > 0) {
+					counter.controlCounts.add(chunk.controlNames.name(id), counts[id]);
+				}
+			}
+
+			counter.linecount += run.code;
+			counter.nonCodeLines += chunk.lines - run.code;
+			counter.longLines += chunk.longLines;
+			lines += chunk.lines;
+		}
+
+		if (state != null && state.withinMethod) {
+			//file ended inside a method, count it up to the end
+			methods.close(open, lines, state.code - state.methodStart, state.deepest);
+		}
+		else if (state != null) {
+			methods.close(open, methods.get(open, MethodSpans.START_LINE), 0, 0);
+		}
+		return counter;
+	}
+
+	/**
+	 * Adds the spans a run started, from the span at from on, to methods.
+	 */
+	private static void addSpans(MethodSpans methods, Chunk chunk, Run run, int from) {
+		for (int i = from; i < run.spans; i++) {
+			String name = chunk.names.name(run.span(i, Run.NAME));
+			int span = methods.add(methods.names.intern(name), chunk.lineOffset + run.span(i, Run.START) + 1);
+			if (run.span(i, Run.END) >= 0) {
+				methods.close(span, chunk.lineOffset + run.span(i, Run.END) + 1, run.span(i, Run.CODE), run.span(i, Run.DEPTH));
+			}
+		}
+	}
+
+
+	/**
+	 * A run of lines, classified into flags, and what the first pass found out about them.
+	 * Lines are numbered from 0 within the chunk.
+	 */
+	private static class Chunk {
+		private final ByteBuffer bytes;
+		private final int maxLineLength;
+
+		short[] flags = new short[1024]; //by line
+		int lines;
+		int longLines;
+		final CountTable names = new CountTable(); //of all method headers, whether they turn out to start a method or not
+		int[] methodLines = new int[16], methodNames = new int[16];
+		int methods;
+		final CountTable controlNames = new CountTable();
+		int[] controlLines = new int[16], controlIds = new int[16];
+		int controls;
+		final boolean[] commentAfter = new boolean[2]; //whether the chunk ends in a comment, by whether it starts in one
+
+		boolean startsInComment;
+		int lineOffset; //lines before the chunk
+		Run guess;
+
+		Chunk(ByteBuffer bytes, int maxLineLength) {
+			this.bytes = bytes;
+			this.maxLineLength = maxLineLength;
+		}
+
+		void classify() {
+			ByteLineReader reader = new ByteLineReader();
+			reader.setMaxLineLength(maxLineLength);
+			reader.open(bytes);
+			LineClassifier classifier = new LineClassifier();
+
+			while (reader.nextLine()) {
+				if (reader.isLongLine()) {
+					classifier.classifyLong(reader.line());
+					longLines++;
+				}
+				else {
+					classifier.classify(reader.line());
+				}
+
+				int flag = 0;
+				if (classifier.isWhitespace()) flag |= WHITESPACE;
+				if (classifier.isSingleLineComment()) flag |= SINGLE_COMMENT;
+				if (classifier.isMultiCommentBegin()) flag |= COMMENT_BEGIN;
+				if (classifier.isMultiCommentEnd()) flag |= COMMENT_END;
+				if (classifier.hasOpeningBracket()) flag |= OPENING;
+				if (classifier.hasClosingBracket()) flag |= CLOSING;
+				if (classifier.hasSemicolon()) flag |= SEMICOLON;
+				if (classifier.isMethod()) {
+					flag |= METHOD;
+					addMethod(classifier.internMethodName(names));
+				}
+				if (classifier.isElse()) {
+					flag |= CONTROL;
+					addControl(controlNames.intern("else"));
+				}
+				else if (classifier.isControlStructure()) {
+					flag |= CONTROL;
+					addControl(classifier.internControlName(controlNames));
+				}
+
+				if (lines == flags.length) {
+					flags = Arrays.copyOf(flags, lines * 2);
+				}
+				flags[lines++] = (short)flag;
+			}
+
+			commentAfter[0] = endsInComment(false);
+			commentAfter[1] = endsInComment(true);
+		}
+
+		private void addMethod(int name) {
+			if (methods == methodLines.length) {
+				methodLines = Arrays.copyOf(methodLines, methods * 2);
+				methodNames = Arrays.copyOf(methodNames, methods * 2);
+			}
+			methodLines[methods] = lines;
+			methodNames[methods++] = name;
+		}
+
+		private void addControl(int id) {
+			if (controls == controlLines.length) {
+				controlLines = Arrays.copyOf(controlLines, controls * 2);
+				controlIds = Arrays.copyOf(controlIds, controls * 2);
+			}
+			controlLines[controls] = lines;
+			controlIds[controls++] = id;
+		}
+
+		private boolean endsInComment(boolean inComment) {
+			for (int line = 0; line < lines; line++) {
+				inComment = inCommentAfter(inComment, flags[line]);
+			}
+			return inComment;
+		}
+	}
+
+	/**
+	 * Whether a line with the given flags leaves a multi-line comment open, as readFile decides it.
+	 */
+	private static boolean inCommentAfter(boolean inComment, int flag) {
+		if (inComment) {
+			return (flag & COMMENT_END) == 0;
+		}
+		if ((flag & (WHITESPACE | SINGLE_COMMENT)) != 0) {
+			return false;
+		}
+		return (flag & COMMENT_BEGIN) != 0 && (flag & COMMENT_END) == 0;
+	}
+
+	/**
+	 * The method tracking of readFile over the flags of a chunk, from a given state.
+	 * Keeps the spans the run starts, which control structures it counts,
+	 * and how the method that was open at the start of the chunk ended, if it did.
+	 */
+	private static class Run {
+		static final int INCOMING = -2; //open is the method open at the start of the chunk
+		static final int NAME = 0, START = 1, END = 2, CODE = 3, DEPTH = 4; //fields of a span, END is -1 while open
+		private static final int FIELDS = 5;
+
+		private final Chunk chunk;
+		boolean inComment;
+		int code; //code lines so far
+		int blank, comment;
+		private int methodCursor, controlCursor; //next entries of the chunk's lists
+
+		boolean withinMethod, expecting;
+		int unclosed, deepest;
+		int methodStart; //code lines when the open method's body started, negative if before the chunk
+		int open = -1; //span of the method being tracked, or INCOMING
+
+		int[] spanFields = new int[FIELDS * 4];
+		int spans;
+		final boolean[] counted; //by control entry of the chunk
+		boolean closedIncoming;
+		int incomingEnd, incomingCode, incomingDepth;
+		long[] idleAfter; //bit per line, only kept for guesses
+
+		Run(Chunk chunk) {
+			this.chunk = chunk;
+			inComment = chunk.startsInComment;
+			counted = new boolean[chunk.controls];
+		}
+
+		/**
+		 * Starts in the state the run of the previous chunk ended in.
+		 */
+		void continueFrom(Run previous) {
+			withinMethod = previous.withinMethod;
+			expecting = previous.expecting;
+			unclosed = previous.unclosed;
+			deepest = previous.deepest;
+			methodStart = previous.methodStart - previous.code;
+			open = INCOMING;
+		}
+
+		boolean isIdle() {
+			return !withinMethod && !expecting;
+		}
+
+		int span(int span, int field) {
+			return spanFields[span * FIELDS + field];
+		}
+
+		/**
+		 * Takes one line, in the same order of checks as readFile.
+		 */
+		void step(int line) {
+			int flag = chunk.flags[line];
+			int method = -1, control = -1; //entries of the line in the chunk's lists
+			if (methodCursor < chunk.methods && chunk.methodLines[methodCursor] == line) {
+				method = methodCursor++;
+			}
+			if (controlCursor < chunk.controls && chunk.controlLines[controlCursor] == line) {
+				control = controlCursor++;
+			}
+
+			boolean wasInComment = inComment;
+			inComment = inCommentAfter(inComment, flag);
+			if (!wasInComment && (flag & WHITESPACE) != 0) {
+				blank++;
+				return;
+			}
+			if (wasInComment || (flag & (SINGLE_COMMENT | COMMENT_BEGIN)) != 0) {
+				comment++;
+				return;
+			}
+			code++;
+
+			if (expecting) {
+				if ((flag & OPENING) != 0) {
+					unclosed = 1;
+					deepest = 1;
+					methodStart = code;
+					expecting = false;
+					withinMethod = true;
+				}
+				return;
+			}
+
+			if (withinMethod) {
+				if ((flag & OPENING) != 0) {
+					unclosed++;
+					deepest = Math.max(deepest, unclosed);
+				}
+				if ((flag & CLOSING) != 0) {
+					unclosed--;
+					if (unclosed < 1) {
+						withinMethod = false;
+						close(line, code - methodStart, deepest);
+					}
+				}
+			}
+
+			else if ((flag & METHOD) != 0) {
+				open = addSpan(chunk.methodNames[method], line);
+				if ((flag & SEMICOLON) != 0) {
+					close(line, 0, 0);
+				}
+				else if ((flag & OPENING) != 0) {
+					unclosed = 1;
+					deepest = 1;
+					methodStart = code;
+					withinMethod = true;
+				}
+				else {
+					expecting = true;
+				}
+				return;
+			}
+
+			if (control >= 0) {
+				counted[control] = true;
+			}
+		}
+
+		private int addSpan(int name, int line) {
+			if ((spans + 1) * FIELDS > spanFields.length) {
+				spanFields = Arrays.copyOf(spanFields, spanFields.length * 2);
+			}
+			int base = spans * FIELDS;
+			spanFields[base + NAME] = name;
+			spanFields[base + START] = line;
+			spanFields[base + END] = -1;
+			return spans++;
+		}
+
+		private void close(int line, int codeLines, int depth) {
+			if (open == INCOMING) {
+				closedIncoming = true;
+				incomingEnd = line;
+				incomingCode = codeLines;
+				incomingDepth = depth;
+				return;
+			}
+			int base = open * FIELDS;
+			spanFields[base + END] = line;
+			spanFields[base + CODE] = codeLines;
+			spanFields[base + DEPTH] = depth;
+		}
+	}
+}
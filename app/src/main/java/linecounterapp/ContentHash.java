@@ -0,0 +1,46 @@
+package linecounterapp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * Fast non-cryptographic 64-bit hash of file contents, in the style of xxHash64.
+ * Good for telling files apart, but not for anything an attacker controls:
+ * callers that rely on two files being identical must still compare the bytes.
+ */
+final class ContentHash {
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	private ContentHash() {
+	}
+
+	/**
+	 * Hashes the remaining bytes of a buffer, leaving its position unchanged.
+	 */
+	static long hash(ByteBuffer bytes) {
+		ByteBuffer in = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int i = in.position();
+		int limit = in.limit();
+		long hash = PRIME5 + (limit - i);
+
+		for (; i + 8 <= limit; i += 8) {
+			long k = Long.rotateLeft(in.getLong(i) * PRIME2, 31) * PRIME1;
+			hash = Long.rotateLeft(hash ^ k, 27) * PRIME1 + PRIME4;
+		}
+		for (; i < limit; i++) {
+			hash = Long.rotateLeft(hash ^ ((in.get(i) & 0xFF) * PRIME5), 11) * PRIME1;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= PRIME2;
+		hash ^= hash >>> 29;
+		hash *= PRIME3;
+		hash ^= hash >>> 32;
+		return hash;
+	}
+}
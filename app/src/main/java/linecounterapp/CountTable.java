@@ -0,0 +1,305 @@
+package linecounterapp;
+
+import java.util.Arrays;
+
+
+/**
+ * Map from names to int counts that doesn't box, for tallying lines and control structures.
+ * Every name gets a fixed id, so a caller can keep the id and count with it directly.
+ * Names can be looked up by a range of a CharSequence, so nothing is allocated
+ * unless the name is new.
+ *
+ * Names are found through an open addressing table of ids. Removed names keep their id
+ * and are just marked absent, so ids never change.
+ */
+class CountTable {
+	private String[] names = new String[16]; //by id
+	private int[] hashes = new int[16]; //by id
+	private int[] counts = new int[16]; //by id
+	private boolean[] present = new boolean[16]; //by id, false once removed
+	private int ids; //number of ids handed out
+	private int size; //number of names present
+
+	private int[] slots = new int[32]; //id+1 of the name hashed to each slot, 0 if empty
+
+	/**
+	 * Returns the id of the name text[start, end), adding it with a count of 0 if it's not present.
+	 */
+	int intern(CharSequence text, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31*hash + text.charAt(i);
+		}
+
+		int mask = slots.length - 1;
+		for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+			int id = slots[slot] - 1;
+			if (id < 0) {
+				return add(text.subSequence(start, end).toString(), hash, slot);
+			}
+			if (hashes[id] == hash && equals(names[id], text, start, end)) {
+				revive(id);
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Returns the id of name, adding it with a count of 0 if it's not present.
+	 */
+	int intern(String name) {
+		int id = find(name);
+		if (id < 0) {
+			return add(name, name.hashCode(), -1);
+		}
+		revive(id);
+		return id;
+	}
+
+	void increment(int id) {
+		counts[id]++;
+	}
+
+	void set(int id, int count) {
+		counts[id] = count;
+	}
+
+	int count(int id) {
+		return counts[id];
+	}
+
+	String name(int id) {
+		return names[id];
+	}
+
+	void put(String name, int count) {
+		int id = intern(name); //before indexing, interning can replace the array
+		counts[id] = count;
+	}
+
+	/**
+	 * Adds to a name's count, adding the name first if it's not present.
+	 */
+	void add(String name, int count) {
+		int id = intern(name);
+		counts[id] += count;
+	}
+
+	/**
+	 * @return the count of name, or 0 if it isn't present
+	 */
+	int get(String name) {
+		int id = find(name);
+		return id < 0 || !present[id] ? 0 : counts[id];
+	}
+
+	boolean containsKey(String name) {
+		int id = find(name);
+		return id >= 0 && present[id];
+	}
+
+	void remove(String name) {
+		int id = find(name);
+		if (id >= 0 && present[id]) {
+			present[id] = false;
+			counts[id] = 0;
+			size--;
+		}
+	}
+
+	/**
+	 * Adds the counts of every name in other to this table.
+	 */
+	void addAll(CountTable other) {
+		for (int id = 0; id < other.ids; id++) {
+			if (other.present[id]) {
+				add(other.names[id], other.counts[id]);
+			}
+		}
+	}
+
+	/**
+	 * Takes the counts of every name in other off this table, removing names whose count reaches 0.
+	 */
+	void subtractAll(CountTable other) {
+		for (int id = 0; id < other.ids; id++) {
+			if (other.present[id]) {
+				int own = find(other.names[id]);
+				if (own >= 0 && present[own]) {
+					counts[own] -= other.counts[id];
+					if (counts[own] <= 0) {
+						remove(other.names[id]);
+					}
+				}
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every name, so ids start from 0 again. The arrays keep their size.
+	 */
+	void clear() {
+		Arrays.fill(names, 0, ids, null);
+		Arrays.fill(counts, 0, ids, 0);
+		Arrays.fill(slots, 0);
+		ids = 0;
+		size = 0;
+	}
+
+	/**
+	 * Number of ids handed out, including those of removed names. Ids run from 0 to ids()-1.
+	 */
+	int ids() {
+		return ids;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * The names present, in alphabetical order.
+	 */
+	String[] sortedNames() {
+		String[] sorted = new String[size];
+		int n = 0;
+		for (int id = 0; id < ids; id++) {
+			if (present[id]) {
+				sorted[n++] = names[id];
+			}
+		}
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof CountTable)) {
+			return false;
+		}
+		CountTable table = (CountTable)other;
+		if (table.size != size) {
+			return false;
+		}
+		for (int id = 0; id < ids; id++) {
+			if (present[id] && (!table.containsKey(names[id]) || table.get(names[id]) != counts[id])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (int id = 0; id < ids; id++) {
+			if (present[id]) {
+				hash += hashes[id] ^ counts[id];
+			}
+		}
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("{");
+		for (String name : sortedNames()) {
+			if (text.length() > 1) {
+				text.append(", ");
+			}
+			text.append(name).append('=').append(get(name));
+		}
+		return text.append('}').toString();
+	}
+
+
+	/**
+	 * @return the id of name whether present or not, or -1 if it never was added
+	 */
+	int find(String name) {
+		int hash = name.hashCode();
+		int mask = slots.length - 1;
+		for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+			int id = slots[slot] - 1;
+			if (id < 0) {
+				return -1;
+			}
+			if (hashes[id] == hash && names[id].equals(name)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Gives a new name the next id.
+	 * @param slot empty slot the name hashes to, or -1 to look it up
+	 */
+	private int add(String name, int hash, int slot) {
+		if (ids == names.length) {
+			int capacity = ids * 2;
+			names = Arrays.copyOf(names, capacity);
+			hashes = Arrays.copyOf(hashes, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			present = Arrays.copyOf(present, capacity);
+		}
+		int id = ids++;
+		names[id] = name;
+		hashes[id] = hash;
+		present[id] = true;
+		size++;
+
+		if (ids * 2 > slots.length) {
+			slots = new int[slots.length * 2];
+			for (int i = 0; i < ids; i++) {
+				placeInSlot(i);
+			}
+		}
+		else if (slot >= 0) {
+			slots[slot] = id + 1;
+		}
+		else {
+			placeInSlot(id);
+		}
+		return id;
+	}
+
+	private void placeInSlot(int id) {
+		int mask = slots.length - 1;
+		int slot = mix(hashes[id]) & mask;
+		while (slots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = id + 1;
+	}
+
+	private void revive(int id) {
+		if (!present[id]) {
+			present[id] = true;
+			size++;
+		}
+	}
+
+	private static boolean equals(String name, CharSequence text, int start, int end) {
+		if (name.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (name.charAt(i) != text.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Spreads the bits of String.hashCode, which clusters badly in the low bits for short names.
+	 */
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,82 @@
+package linecounterapp;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * Comma separated values. Every line starts with the path and the table it belongs to,
+ * and every table starts with a header line naming its columns.
+ * The totals of a section are a table of their own, named "totals".
+ */
+class CsvReportWriter extends ChannelReportWriter {
+	private String path = "";
+	private String table = "";
+
+	CsvReportWriter(WritableByteChannel channel) {
+		super(channel);
+	}
+
+	@Override
+	public void section(String path, String summary, LineCounter counter) throws IOException {
+		this.path = path;
+		beginTable("totals", null, "Total", "Count");
+		row("Files", counter.filecount);
+		row("Stripped Line Count", counter.linecount);
+		row("Empty Lines", counter.nonCodeLines);
+		row("Long Lines", counter.longLines);
+		endTable();
+	}
+
+	@Override
+	public void beginTable(String table, String title, String... columns) throws IOException {
+		this.table = table;
+		line.append("path,table");
+		for (String column : columns) {
+			line.append(',');
+			appendField(column);
+		}
+		writeLine();
+	}
+
+	@Override
+	public void row(String name, int... values) throws IOException {
+		appendField(path);
+		line.append(',');
+		appendField(table);
+		line.append(',');
+		appendField(name);
+		for (int value : values) {
+			line.append(',').append(value);
+		}
+		writeLine();
+	}
+
+	@Override
+	public void endTable() {
+	}
+
+	/**
+	 * Appends a field, quoted if it has a comma, quote or line break in it.
+	 */
+	private void appendField(String field) {
+		boolean quote = false;
+		for (int i = 0; i < field.length() && !quote; i++) {
+			char c = field.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			line.append(field);
+			return;
+		}
+		line.append('"');
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c == '"') {
+				line.append('"');
+			}
+			line.append(c);
+		}
+		line.append('"');
+	}
+}
@@ -0,0 +1,464 @@
+package linecounterapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+
+/**
+ * Analyzes every .java file below a directory and merges the results into one LineCounter.
+ * Files are split between ForkJoin tasks so idle workers can steal work from busy ones.
+ */
+public class DirectoryAnalyzer {
+	private static final int FILES_PER_TASK = 8; //below this many files a task analyzes them itself instead of splitting
+
+	private final ForkJoinPool pool;
+	private ResultCache cache;
+	private LineCounterListener listener;
+	private int maxLineLength = LineCounter.DEFAULT_MAX_LINE_LENGTH;
+	private boolean keepDetails = true;
+	private boolean deduplicate;
+	private final AtomicLong duplicateFiles = new AtomicLong();
+	private final AtomicLong duplicateBytes = new AtomicLong();
+	private final Queue<String> failures = new ConcurrentLinkedQueue<String>();
+	private volatile boolean cancelled;
+	private final ThreadLocal<LineCounter> scratch = ThreadLocal.withInitial(LineCounter::new); //reused by each thread for its files
+
+	public DirectoryAnalyzer() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public DirectoryAnalyzer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Makes files that are unchanged since the cache was last saved reuse their cached results.
+	 * @param cache cache to look files up in, or null to analyze every file
+	 */
+	public void setCache(ResultCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Sends the methods and control structures of each file to a listener as soon as that file is done.
+	 * Files are analyzed in parallel, so the listener has to be thread safe. Lines aren't reported.
+	 * @param listener listener to notify, or null for none
+	 */
+	public void setListener(LineCounterListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets whether the result keeps the methods and control structures of every file, or only the line and file counts.
+	 * Without them the memory used doesn't grow with the number of files, and a listener like
+	 * StreamingSummary can keep what is needed of them instead.
+	 */
+	public void setKeepDetails(boolean keep) {
+		this.keepDetails = keep;
+	}
+
+	/**
+	 * Sets whether files with the same contents, like vendored or copied sources, are analyzed only once.
+	 * Files are grouped by size, then by a hash of their contents, and a file only counts as a copy
+	 * if its bytes are the same as the first file with that hash. Every copy still gets its own
+	 * entry in the result, with methods labeled by its own path.
+	 * Only analyzeDirectory looks for copies, analyzeFile always analyzes the file it is given.
+	 */
+	public void setDeduplicate(boolean deduplicate) {
+		this.deduplicate = deduplicate;
+	}
+
+	/**
+	 * Number of files that were skipped as copies of another file, over every analyzeDirectory call.
+	 */
+	public long getDuplicateFiles() {
+		return duplicateFiles.get();
+	}
+
+	/**
+	 * Total size of the files that were skipped as copies.
+	 */
+	public long getDuplicateBytes() {
+		return duplicateBytes.get();
+	}
+
+	/**
+	 * Writes the files skipped as copies to the current section of a report, as a "dedup" table with one row.
+	 * Sizes are in kilobytes, rounded up, since report values are ints.
+	 */
+	public void writeDuplicates(ReportWriter out) throws IOException {
+		out.beginTable("dedup", "Copies skipped:", "Skipped", "Files", "Kilobytes");
+		out.row("copies", (int)getDuplicateFiles(), (int)((getDuplicateBytes() + 1023) / 1024));
+		out.endTable();
+	}
+
+	/**
+	 * Errors of the files that couldn't be read since the last call, like "Could not read file: ...", in the order they happened.
+	 * Those files are left out of the counts.
+	 */
+	public List<String> takeFailures() {
+		List<String> taken = new ArrayList<String>();
+		for (String failure = failures.poll(); failure != null; failure = failures.poll()) {
+			taken.add(failure);
+		}
+		return taken;
+	}
+
+	/**
+	 * Sets the maximum line length every file is analyzed with, see LineCounter.setMaxLineLength.
+	 */
+	public void setMaxLineLength(int bytes) {
+		this.maxLineLength = bytes;
+	}
+
+	/**
+	 * Stops a running analyzeDirectory as soon as the files being read now are done.
+	 * The analyzer stays cancelled, later calls of analyzeDirectory fail straight away.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Walks a directory tree and analyzes all .java files in it.
+	 * Method names in the result are prefixed with the file's path relative to the directory.
+	 * @param directory root of the tree to analyze
+	 * @return Merged counts of every file in the tree
+	 * @throws IOException if the tree can't be walked
+	 * @throws CancellationException if cancel was called
+	 */
+	public LineCounter analyzeDirectory(File directory) throws IOException {
+		return analyzeDirectory(directory, null);
+	}
+
+	/**
+	 * Same as analyzeDirectory(directory), and also gives the result of each file to onFile, before its methods are
+	 * prefixed with its path. Files are analyzed in parallel, so onFile has to be thread safe.
+	 * @param onFile called with each file's path relative to the directory and its counts, or null.
+	 * It may throw UncheckedIOException, which is thrown from here as the IOException it wraps.
+	 */
+	public LineCounter analyzeDirectory(File directory, BiConsumer<String, LineCounter> onFile) throws IOException {
+		Path root = directory.toPath();
+		AnalysisPhaseEvent walk = AnalysisPhaseEvent.start(AnalysisPhaseEvent.WALK, root.toString());
+		List<Path> files = findJavaFiles(root);
+		AnalysisMetrics.get().walkNanos.add(walk.finish(0));
+		Batch batch = new Batch(root, files, onFile);
+		LineCounter total;
+		try {
+			total = pool.invoke(new AnalyzeTask(batch, 0, files.size()));
+			if (batch.copies != null && !cancelled) {
+				batch.copies.mergeInto(total, batch);
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause(); //from onFile, which can't throw IOException itself
+		}
+		if (cancelled) {
+			throw new CancellationException("analysis of "+directory+" was cancelled");
+		}
+		return total;
+	}
+
+	/**
+	 * Lists the .java files below a directory in a stable order.
+	 */
+	static List<Path> findJavaFiles(Path root) throws IOException {
+		try (Stream<Path> paths = Files.walk(root)) {
+			return paths.filter(path -> path.toString().endsWith(".java") && Files.isRegularFile(path))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+
+	/**
+	 * Analyzes one file, through the cache if there is one.
+	 * Huge files are split between the pool's threads, by the cache or here, so one of them doesn't keep a single thread
+	 * busy long after the rest.
+	 * A file that can't be read gives an empty counter, and its error is kept for takeFailures.
+	 */
+	LineCounter analyzeFile(Path file) {
+		return analyzeFile(file, false);
+	}
+
+	/**
+	 * @param reuse whether the result may be this thread's reused counter, which is overwritten by its next file
+	 */
+	private LineCounter analyzeFile(Path file, boolean reuse) {
+		if (cache != null) {
+			try {
+				return cache.analyze(file, maxLineLength, pool);
+			} catch (IOException e) {
+				//fall through, LineCounter.analyzeFile gives the error the same way for every file
+			}
+		}
+		else if (file.toFile().length() >= ChunkedFileAnalyzer.MIN_SIZE) {
+			ChunkedFileAnalyzer chunked = new ChunkedFileAnalyzer(pool);
+			chunked.setMaxLineLength(maxLineLength);
+			try {
+				return chunked.analyzeFile(file.toFile());
+			} catch (IOException e) {
+				//fall through, as above
+			}
+		}
+		LineCounter counter;
+		if (reuse) {
+			counter = scratch.get();
+			counter.reset();
+		}
+		else {
+			counter = new LineCounter();
+		}
+		counter.setMaxLineLength(maxLineLength);
+		String summary = counter.analyzeFile(file.toFile());
+		if (counter.filecount == 0) { //only files that were read are counted
+			failures.add(summary);
+		}
+		return counter;
+	}
+
+
+	/**
+	 * Bytes of the files done so far, for the listener's progress events.
+	 */
+	private class Progress {
+		private final long[] sizes; //by index in files
+		private final long total;
+		private final AtomicLong done = new AtomicLong();
+
+		Progress(List<Path> files) {
+			sizes = new long[files.size()];
+			long sum = 0;
+			for (int i = 0; i < sizes.length; i++) {
+				try {
+					sizes[i] = Files.size(files.get(i));
+				} catch (IOException e) {
+					sizes[i] = 0; //fails again when it is analyzed, and is kept then
+				}
+				sum += sizes[i];
+			}
+			total = sum;
+		}
+
+		void fileDone(int index) {
+			listener.progress(done.addAndGet(sizes[index]), total);
+		}
+	}
+
+	/**
+	 * Which files are copies of an earlier file in the list, and the results of the files they copy.
+	 */
+	private class Copies {
+		private final int[] originalOf; //by index in files: -1 if unique, the file's own index if it has copies, else the index of its original
+		private final LineCounter[] originals; //unlabeled results of the files that have copies, by index
+
+		Copies(List<Path> files) {
+			originalOf = new int[files.size()];
+			originals = new LineCounter[files.size()];
+			Arrays.fill(originalOf, -1);
+
+			Map<Long, List<Integer>> bySize = new HashMap<Long, List<Integer>>();
+			for (int i = 0; i < files.size(); i++) {
+				try {
+					long size = Files.size(files.get(i));
+					if (size <= Integer.MAX_VALUE) {
+						bySize.computeIfAbsent(size, key -> new ArrayList<Integer>()).add(i);
+					}
+				} catch (IOException e) {
+					//fails again when it is analyzed, and is kept then
+				}
+			}
+
+			//only files that share their size with another one need hashing
+			int[] candidates = bySize.values().stream().filter(group -> group.size() > 1)
+					.flatMap(List::stream).mapToInt(Integer::intValue).toArray();
+			long[] hashes = new long[files.size()];
+			boolean[] hashed = new boolean[files.size()];
+			pool.submit(() -> IntStream.of(candidates).parallel().forEach(i -> {
+				try {
+					hashes[i] = ContentHash.hash(ByteBuffer.wrap(Files.readAllBytes(files.get(i))));
+					hashed[i] = true;
+				} catch (IOException e) {
+					//analyzed on its own, which keeps the error if it fails again
+				}
+			})).join();
+
+			for (Map.Entry<Long, List<Integer>> group : bySize.entrySet()) {
+				Map<Long, List<Integer>> byHash = new HashMap<Long, List<Integer>>();
+				for (int i : group.getValue()) {
+					if (hashed[i]) {
+						byHash.computeIfAbsent(hashes[i], key -> new ArrayList<Integer>()).add(i);
+					}
+				}
+				for (List<Integer> same : byHash.values()) {
+					if (same.size() > 1) {
+						findOriginals(files, same, group.getKey());
+					}
+				}
+			}
+		}
+
+		/**
+		 * Compares the bytes of files with the same hash, in list order, so a hash collision can't make two different files count as one.
+		 */
+		private void findOriginals(List<Path> files, List<Integer> same, long size) {
+			List<Integer> distinct = new ArrayList<Integer>();
+			for (int i : same) {
+				for (int original : distinct) {
+					try {
+						if (Files.mismatch(files.get(original), files.get(i)) == -1) {
+							originalOf[original] = original;
+							originalOf[i] = original;
+							duplicateFiles.incrementAndGet();
+							duplicateBytes.addAndGet(size);
+							break;
+						}
+					} catch (IOException e) {
+						break; //analyze it on its own
+					}
+				}
+				if (originalOf[i] < 0) {
+					distinct.add(i);
+				}
+			}
+		}
+
+		boolean isCopy(int index) {
+			return originalOf[index] >= 0 && originalOf[index] != index;
+		}
+
+		/**
+		 * Keeps an unlabeled copy of a file's result if other files copy it.
+		 */
+		void keep(int index, LineCounter counter) {
+			if (originalOf[index] == index) {
+				LineCounter kept = new LineCounter();
+				kept.merge(counter);
+				originals[index] = kept;
+			}
+		}
+
+		/**
+		 * Adds the result of every copy to total, labeled with the copy's own path.
+		 */
+		void mergeInto(LineCounter total, Batch batch) {
+			for (int i = 0; i < originalOf.length && !cancelled; i++) {
+				if (isCopy(i)) {
+					LineCounter counter = new LineCounter();
+					counter.merge(originals[originalOf[i]]);
+					batch.fileDone(i, counter, total);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The files of one analyzeDirectory call, and what is done with the result of each.
+	 */
+	private class Batch {
+		final Path root;
+		final List<Path> files;
+		final Progress progress; //null without a listener
+		final Copies copies; //null unless deduplicating
+		final BiConsumer<String, LineCounter> onFile; //null if not asked for
+
+		Batch(Path root, List<Path> files, BiConsumer<String, LineCounter> onFile) {
+			this.root = root;
+			this.files = files;
+			this.onFile = onFile;
+			progress = listener == null ? null : new Progress(files);
+			copies = deduplicate ? new Copies(files) : null;
+		}
+
+		/**
+		 * Labels the methods of a file with its path, reports it and merges it into total.
+		 */
+		void fileDone(int index, LineCounter counter, LineCounter total) {
+			String path = root.relativize(files.get(index)).toString();
+			if (onFile != null) {
+				onFile.accept(path, counter);
+			}
+			counter.qualifyMethods(path);
+			if (listener != null) {
+				counter.replay(listener);
+				progress.fileDone(index);
+			}
+			merge(total, counter, keepDetails);
+		}
+	}
+
+	/**
+	 * Analyzes files[from, to), splitting the range in half until it is small enough.
+	 */
+	private class AnalyzeTask extends RecursiveTask<LineCounter> {
+		private final Batch batch;
+		private final int from, to;
+
+		AnalyzeTask(Batch batch, int from, int to) {
+			this.batch = batch;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected LineCounter compute() {
+			if (to - from <= FILES_PER_TASK) {
+				Copies copies = batch.copies;
+				LineCounter total = new LineCounter();
+				for (int i = from; i < to && !cancelled; i++) {
+					if (copies != null && copies.isCopy(i)) {
+						continue; //added from its original's result once every original is done
+					}
+					//the thread's reused counter is merged and done with before the next file, unless onFile might keep it
+					LineCounter counter = analyzeFile(batch.files.get(i), batch.onFile == null);
+					if (copies != null) {
+						copies.keep(i, counter);
+					}
+					batch.fileDone(i, counter, total);
+				}
+				return total;
+			}
+
+			int middle = (from + to) >>> 1;
+			AnalyzeTask left = new AnalyzeTask(batch, from, middle);
+			left.fork();
+			LineCounter right = new AnalyzeTask(batch, middle, to).compute();
+			LineCounter total = left.join();
+			merge(total, right, keepDetails);
+			return total;
+		}
+	}
+
+	/**
+	 * Merges counter into total, timing it for the metrics.
+	 * @param details whether to merge the methods and control structures too, or only the totals
+	 */
+	static void merge(LineCounter total, LineCounter counter, boolean details) {
+		long start = System.nanoTime();
+		if (details) {
+			total.merge(counter);
+		}
+		else {
+			total.mergeTotals(counter);
+		}
+		AnalysisMetrics.get().mergeNanos.add(System.nanoTime() - start);
+	}
+}
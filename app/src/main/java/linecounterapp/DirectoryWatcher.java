@@ -0,0 +1,214 @@
+package linecounterapp;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+
+/**
+ * Keeps the counts of a directory tree up to date while its files change.
+ * Changes are collected until the tree has been quiet for DEBOUNCE_MILLIS, then only the touched
+ * .java files are analyzed again. Their old counts are subtracted from the total and the new ones added.
+ */
+public class DirectoryWatcher implements Closeable {
+	static final long DEBOUNCE_MILLIS = 300;
+
+	private final Path root;
+	private final DirectoryAnalyzer analyzer;
+	private final ForkJoinPool pool;
+	private final WatchService watchService;
+	private final HashMap<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+	private final ConcurrentHashMap<Path, LineCounter> fileResults = new ConcurrentHashMap<Path, LineCounter>();
+	private LineCounter total;
+	private MethodIndex.Builder index;
+
+	/**
+	 * @param directory root of the tree to watch
+	 * @param analyzer analyzes the individual files, and its cache if it has one is used
+	 * @param pool runs the initial analysis of the tree
+	 */
+	public DirectoryWatcher(File directory, DirectoryAnalyzer analyzer, ForkJoinPool pool) throws IOException {
+		this.root = directory.toPath();
+		this.analyzer = analyzer;
+		this.pool = pool;
+		watchService = root.getFileSystem().newWatchService();
+	}
+
+	/**
+	 * Keeps an index up to date with the methods and control structures of every file, from start on.
+	 * Writing it out is up to the caller, for example after each update.
+	 * @param index builder to put each analyzed file in and remove deleted files from, or null for none
+	 */
+	public void setIndex(MethodIndex.Builder index) {
+		this.index = index;
+	}
+
+	/**
+	 * Starts watching the tree and analyzes every file in it.
+	 * @return the counts of the whole tree
+	 */
+	public LineCounter start() throws IOException {
+		rescan();
+		return total;
+	}
+
+	/**
+	 * Waits for changes and updates the counts, until the watcher is closed or the thread interrupted.
+	 * @param onUpdate called on this thread with the updated counts after each batch of changes
+	 */
+	public void watch(Consumer<LineCounter> onUpdate) throws IOException {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				Set<Path> changed = new HashSet<Path>();
+				boolean overflow = false;
+
+				//keep collecting until nothing has happened for a while, so a burst of saves is handled once
+				while (key != null) {
+					overflow |= collectChanges(key, changed);
+					key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+				}
+
+				if (overflow) {
+					rescan();
+				}
+				else {
+					update(changed);
+				}
+				onUpdate.accept(total);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			//closed from another thread, stop watching
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	/**
+	 * Reads the events of a key into the set of changed files, registering new directories as they appear.
+	 * @return true if events were lost and the whole tree has to be scanned again
+	 */
+	private boolean collectChanges(WatchKey key, Set<Path> changed) throws IOException {
+		Path directory = directories.get(key);
+		if (directory == null && !key.isValid()) {
+			return false; //cancelled by a rescan, which saw whatever changed
+		}
+		boolean overflow = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW || directory == null) {
+				overflow = true;
+				continue;
+			}
+
+			Path path = directory.resolve((Path)event.context());
+			if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+				registerTree(path);
+				for (Path file : DirectoryAnalyzer.findJavaFiles(path)) {
+					changed.add(file);
+				}
+			}
+			else if (path.toString().endsWith(".java")) {
+				changed.add(path);
+			}
+			else if (event.kind() == ENTRY_DELETE) {
+				//might have been a directory, drop whatever was below it
+				for (Path file : fileResults.keySet()) {
+					if (file.startsWith(path)) {
+						changed.add(file);
+					}
+				}
+			}
+		}
+		if (!key.reset()) {
+			directories.remove(key);
+		}
+		return overflow;
+	}
+
+	/**
+	 * Analyzes the changed files again and applies the differences to the total.
+	 */
+	private void update(Set<Path> changed) {
+		for (Path file : changed) {
+			LineCounter old = fileResults.remove(file);
+			if (old != null) {
+				total.subtract(old);
+			}
+			if (Files.isRegularFile(file)) {
+				LineCounter counter = analyze(file);
+				fileResults.put(file, counter);
+				total.merge(counter);
+			}
+			else if (index != null) {
+				index.remove(root.relativize(file).toString());
+			}
+		}
+	}
+
+	/**
+	 * Watches the tree again and analyzes it from scratch.
+	 * Folders created or deleted while events were lost are only found by registering the tree anew.
+	 */
+	private void rescan() throws IOException {
+		for (WatchKey key : directories.keySet()) {
+			key.cancel();
+		}
+		directories.clear();
+		registerTree(root);
+		List<Path> files = DirectoryAnalyzer.findJavaFiles(root);
+		fileResults.clear();
+		if (index != null) {
+			index.clear();
+		}
+		pool.submit(() -> files.parallelStream().forEach(file -> fileResults.put(file, analyze(file)))).join();
+
+		total = new LineCounter();
+		for (Path file : files) {
+			total.merge(fileResults.get(file));
+		}
+	}
+
+	private LineCounter analyze(Path file) {
+		LineCounter counter = analyzer.analyzeFile(file);
+		String path = root.relativize(file).toString();
+		if (index != null) {
+			index.put(path, counter);
+		}
+		counter.qualifyMethods(path);
+		return counter;
+	}
+
+	private void registerTree(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : (Iterable<Path>)paths.filter(Files::isDirectory)::iterator) {
+				WatchKey key = path.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+				directories.put(key, path);
+			}
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package linecounterapp;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * JFR event for each file a LineCounter analyzes, from opening it to the end of its last line.
+ */
+@Name("linecounterapp.FileAnalyzed")
+@Label("File Analyzed")
+@Category({"Line Counter"})
+@Description("A source file read and counted by a LineCounter")
+class FileAnalyzedEvent extends Event {
+	@Label("Path")
+	String path;
+
+	@Label("Size")
+	@DataAmount
+	long bytes;
+
+	@Label("Lines")
+	int lines;
+
+	@Label("Code Lines")
+	int codeLines;
+
+	@Label("Methods")
+	int methods;
+
+	@Label("Long Lines")
+	int longLines;
+}
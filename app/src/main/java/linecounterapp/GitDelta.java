@@ -0,0 +1,119 @@
+package linecounterapp;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.TreeSet;
+
+
+/**
+ * How the counts of the changed files differ between two revisions, as found by GitDeltaAnalyzer.
+ * Methods are matched by file and name, so overloads with the same parameter list in one file are added together.
+ */
+public class GitDelta {
+	private final String from, to;
+	private final List<String> files;
+	private final LineCounter before, after;
+	private final CountTable methodsBefore, methodsAfter;
+
+	GitDelta(String from, String to, List<String> files, LineCounter before, LineCounter after) {
+		this.from = from;
+		this.to = to;
+		this.files = files;
+		this.before = before;
+		this.after = after;
+		methodsBefore = linesByMethod(before);
+		methodsAfter = linesByMethod(after);
+	}
+
+	/**
+	 * Paths of the changed .java files, relative to the repository.
+	 */
+	public List<String> getFiles() {
+		return files;
+	}
+
+	/**
+	 * Counts of the changed files at the first revision.
+	 */
+	public LineCounter getBefore() {
+		return before;
+	}
+
+	/**
+	 * Counts of the changed files at the second revision.
+	 */
+	public LineCounter getAfter() {
+		return after;
+	}
+
+	/**
+	 * Change in the code lines of a method, 0 if it isn't in either revision.
+	 * @param method method name prefixed by its file, as in the method table
+	 */
+	public int methodDelta(String method) {
+		return methodsAfter.get(method) - methodsBefore.get(method);
+	}
+
+	/**
+	 * Change in the number of a control structure.
+	 */
+	public int controlDelta(String type) {
+		return after.controlCounts.get(type) - before.controlCounts.get(type);
+	}
+
+	/**
+	 * Line totals of both revisions, the summary of the report's section.
+	 */
+	public String getSummary() {
+		return "Changes from "+from+" to "+to+" in "+files.size()+" files"
+				+"\nStripped Line Count: "+before.linecount+" -> "+after.linecount+" ("+signed(after.linecount - before.linecount)+")"
+				+"\nEmpty Lines: "+before.nonCodeLines+" -> "+after.nonCodeLines+" ("+signed(after.nonCodeLines - before.nonCodeLines)+")";
+	}
+
+	/**
+	 * Writes the section of a report: the line totals, with the counts of the second revision,
+	 * then every method and control type that changed, with its count before, after and the change.
+	 * A method that is missing from a revision has 0 lines there.
+	 * @param path the repository, to name the section
+	 */
+	void writeReport(ReportWriter out, String path) throws IOException {
+		out.section(path, getSummary(), after);
+		out.beginTable("methods", null, "Method", "Before", "After", "Change");
+		for (String method : union(methodsBefore, methodsAfter)) {
+			int delta = methodDelta(method);
+			if (delta != 0 || !methodsBefore.containsKey(method) || !methodsAfter.containsKey(method)) {
+				out.row(method, methodsBefore.get(method), methodsAfter.get(method), delta);
+			}
+		}
+		out.endTable();
+
+		out.beginTable("controls", null, "Control Type", "Before", "After", "Change");
+		for (String type : union(before.controlCounts, after.controlCounts)) {
+			int delta = controlDelta(type);
+			if (delta != 0) {
+				out.row(type, before.controlCounts.get(type), after.controlCounts.get(type), delta);
+			}
+		}
+		out.endTable();
+	}
+
+
+	private static CountTable linesByMethod(LineCounter counter) {
+		CountTable lines = new CountTable();
+		for (int span = 0; span < counter.methods.size(); span++) {
+			lines.add(counter.methods.displayName(span), counter.methods.get(span, MethodSpans.CODE_LINES));
+		}
+		return lines;
+	}
+
+	private static TreeSet<String> union(CountTable a, CountTable b) {
+		TreeSet<String> names = new TreeSet<String>();
+		for (String name : a.sortedNames()) names.add(name);
+		for (String name : b.sortedNames()) names.add(name);
+		return names;
+	}
+
+	private static String signed(int delta) {
+		return delta > 0 ? "+"+delta : Integer.toString(delta);
+	}
+}
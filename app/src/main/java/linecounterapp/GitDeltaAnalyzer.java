@@ -0,0 +1,156 @@
+package linecounterapp;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Compares the counts of two revisions of a local git repository, analyzing only the .java files that differ between them.
+ * Both versions of each file are read straight from the object store with "git cat-file --batch",
+ * so nothing is checked out and nothing outside the repository is contacted.
+ * Needs the git command on the PATH.
+ */
+public class GitDeltaAnalyzer {
+	private final File repository;
+	private int maxLineLength = LineCounter.DEFAULT_MAX_LINE_LENGTH;
+
+	/**
+	 * @param repository the working tree or .git directory of a repository
+	 */
+	public GitDeltaAnalyzer(File repository) {
+		this.repository = repository;
+	}
+
+	/**
+	 * Sets the maximum line length both revisions are analyzed with, see LineCounter.setMaxLineLength.
+	 */
+	public void setMaxLineLength(int bytes) {
+		this.maxLineLength = bytes;
+	}
+
+	/**
+	 * Analyzes the files changed between two revisions.
+	 * @param from revision to compare from, anything git rev-parse understands
+	 * @param to revision to compare to
+	 * @throws IOException if git can't be run or doesn't know a revision
+	 */
+	public GitDelta analyze(String from, String to) throws IOException {
+		if (from.startsWith("-") || to.startsWith("-")) {
+			throw new IOException("Not a revision: "+(from.startsWith("-") ? from : to));
+		}
+
+		List<String[]> changes = changedFiles(from, to);
+		LineCounter before = new LineCounter();
+		LineCounter after = new LineCounter();
+		List<String> files = new ArrayList<String>();
+
+		Process catFile = git("cat-file", "--batch").redirectError(ProcessBuilder.Redirect.DISCARD).start();
+		try (OutputStream requests = catFile.getOutputStream();
+				DataInputStream blobs = new DataInputStream(new BufferedInputStream(catFile.getInputStream()))) {
+			for (String[] change : changes) {
+				String status = change[0], path = change[1];
+				files.add(path);
+				if (!status.startsWith("A")) {
+					mergeBlob(before, requests, blobs, from, path);
+				}
+				if (!status.startsWith("D")) {
+					mergeBlob(after, requests, blobs, to, path);
+				}
+			}
+		} finally {
+			catFile.destroy();
+		}
+		return new GitDelta(from, to, files, before, after);
+	}
+
+	/**
+	 * Lists the .java files that differ between two revisions, as {status, path} pairs.
+	 * Renames are reported as a delete and an add, so each path is compared with itself.
+	 */
+	private List<String[]> changedFiles(String from, String to) throws IOException {
+		Process diff = git("diff", "--name-status", "-z", "--no-renames", from, to, "--", "*.java").start();
+		diff.getOutputStream().close();
+		byte[] output;
+		byte[] errors;
+		try (InputStream in = diff.getInputStream(); InputStream err = diff.getErrorStream()) {
+			output = in.readAllBytes();
+			errors = err.readAllBytes();
+		}
+		int exit = waitFor(diff);
+		if (exit != 0) {
+			throw new IOException("git diff failed: "+new String(errors, StandardCharsets.UTF_8).trim());
+		}
+
+		//-z output is status NUL path NUL, repeated
+		String[] fields = new String(output, StandardCharsets.UTF_8).split("\0");
+		List<String[]> changes = new ArrayList<String[]>();
+		for (int i = 0; i + 1 < fields.length; i += 2) {
+			changes.add(new String[] {fields[i], fields[i+1]});
+		}
+		return changes;
+	}
+
+	/**
+	 * Asks cat-file for one blob and adds its counts to total. A blob that doesn't exist is skipped.
+	 */
+	private void mergeBlob(LineCounter total, OutputStream requests, DataInputStream blobs, String revision, String path) throws IOException {
+		requests.write((revision+":"+path+"\n").getBytes(StandardCharsets.UTF_8));
+		requests.flush();
+
+		//the answer is "<object> blob <size>\n<content>\n", or "<object> missing\n"
+		String header = readLine(blobs);
+		String[] parts = header.split(" ");
+		if (parts.length != 3 || !parts[1].equals("blob")) {
+			return;
+		}
+		byte[] content = new byte[Integer.parseInt(parts[2])];
+		blobs.readFully(content);
+		blobs.readByte(); //newline after the content
+
+		LineCounter counter = new LineCounter();
+		counter.setMaxLineLength(maxLineLength);
+		counter.analyzeBytes(ByteBuffer.wrap(content));
+		counter.qualifyMethods(path);
+		total.merge(counter);
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		for (int b = in.read(); b != '\n'; b = in.read()) {
+			if (b < 0) {
+				throw new IOException("git cat-file stopped answering");
+			}
+			line.write(b);
+		}
+		return line.toString(StandardCharsets.UTF_8);
+	}
+
+	private ProcessBuilder git(String... args) {
+		List<String> command = new ArrayList<String>();
+		command.add("git");
+		command.add("-C");
+		command.add(repository.getPath());
+		for (String arg : args) {
+			command.add(arg);
+		}
+		return new ProcessBuilder(command);
+	}
+
+	private static int waitFor(Process process) throws IOException {
+		try {
+			return process.waitFor();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted waiting for git", e);
+		}
+	}
+}
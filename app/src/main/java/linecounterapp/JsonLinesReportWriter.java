@@ -0,0 +1,77 @@
+package linecounterapp;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * One JSON object per line. A section's totals are one object with "table": "totals",
+ * and every row is an object with the path, the table, and a field per column named after the column in lower case.
+ */
+class JsonLinesReportWriter extends ChannelReportWriter {
+	private String path = "";
+	private String table = "";
+	private String[] keys = new String[0];
+
+	JsonLinesReportWriter(WritableByteChannel channel) {
+		super(channel);
+	}
+
+	@Override
+	public void section(String path, String summary, LineCounter counter) throws IOException {
+		this.path = path;
+		line.append("{\"path\":");
+		appendString(path);
+		line.append(",\"table\":\"totals\",\"files\":").append(counter.filecount)
+				.append(",\"strippedLineCount\":").append(counter.linecount)
+				.append(",\"emptyLines\":").append(counter.nonCodeLines)
+				.append(",\"longLines\":").append(counter.longLines)
+				.append('}');
+		writeLine();
+	}
+
+	@Override
+	public void beginTable(String table, String title, String... columns) {
+		this.table = table;
+		keys = new String[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			keys[i] = columns[i].toLowerCase().replace(' ', '_');
+		}
+	}
+
+	@Override
+	public void row(String name, int... values) throws IOException {
+		line.append("{\"path\":");
+		appendString(path);
+		line.append(",\"table\":");
+		appendString(table);
+		line.append(",\"").append(keys[0]).append("\":");
+		appendString(name);
+		for (int i = 0; i < values.length; i++) {
+			line.append(",\"").append(keys[i + 1]).append("\":").append(values[i]);
+		}
+		line.append('}');
+		writeLine();
+	}
+
+	@Override
+	public void endTable() {
+	}
+
+	private void appendString(String text) {
+		line.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				line.append('\\').append(c);
+			}
+			else if (c < 0x20) {
+				line.append(String.format("\\u%04x", (int)c));
+			}
+			else {
+				line.append(c);
+			}
+		}
+		line.append('"');
+	}
+}
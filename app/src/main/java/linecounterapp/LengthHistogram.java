@@ -0,0 +1,79 @@
+package linecounterapp;
+
+
+/**
+ * Histogram of non-negative ints in a fixed number of buckets, for quantiles of method lengths.
+ * Values below EXACT have a bucket each. Above that every power of 2 is split into SUB_BUCKETS buckets,
+ * so a quantile is off by less than 1/SUB_BUCKETS of its value however many values are added.
+ */
+class LengthHistogram {
+	private static final int EXACT_BITS = 7;
+	private static final int EXACT = 1 << EXACT_BITS;
+	private static final int SUB_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private final long[] counts = new long[EXACT + (31 - EXACT_BITS) * SUB_BUCKETS];
+	private long total;
+	private int min = Integer.MAX_VALUE;
+	private int max;
+
+	void add(int value) {
+		value = Math.max(value, 0);
+		counts[bucket(value)]++;
+		total++;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	long count() {
+		return total;
+	}
+
+	int min() {
+		return total == 0 ? 0 : min;
+	}
+
+	int max() {
+		return max;
+	}
+
+	/**
+	 * The smallest value with at least the fraction q of all values at or below it,
+	 * rounded down to the start of its bucket. 0 if nothing was added.
+	 */
+	int quantile(double q) {
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(q * total));
+		long seen = 0;
+		for (int bucket = 0; bucket < counts.length; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank) {
+				return Math.max(min, Math.min(max, lowest(bucket)));
+			}
+		}
+		return max;
+	}
+
+	private static int bucket(int value) {
+		if (value < EXACT) {
+			return value;
+		}
+		int exponent = 31 - Integer.numberOfLeadingZeros(value); //at least EXACT_BITS
+		int sub = (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return EXACT + (exponent - EXACT_BITS) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * First value that falls in a bucket.
+	 */
+	private static int lowest(int bucket) {
+		if (bucket < EXACT) {
+			return bucket;
+		}
+		int exponent = (bucket - EXACT) / SUB_BUCKETS + EXACT_BITS;
+		int sub = (bucket - EXACT) % SUB_BUCKETS;
+		return (1 << exponent) | (sub << (exponent - SUB_BITS));
+	}
+}
@@ -0,0 +1,357 @@
+package linecounterapp;
+
+
+/**
+ * Classifies a single line of Java source in one left-to-right pass over its characters.
+ * Reproduces what the regular expressions LineCounter used to run against each line matched,
+ * without backtracking and without allocating anything unless a name is asked for.
+ * Each character is looked at a bounded number of times, so the cost is linear in the length of the line.
+ * Lines too long to be worth that are given to classifyLong, which only looks for comments, braces and semicolons.
+ *
+ * Call classify() with a line, then query it with the predicate methods.
+ * An instance keeps a reference to the last line until the next call, so it is not thread safe.
+ */
+class LineClassifier {
+	//character classes, for the ASCII range
+	private static final byte WORD = 1; //regex \w
+	private static final byte SPACE = 2; //regex \s
+	private static final byte HORIZONTAL = 4; //regex \h
+	private static final byte TYPE = 8; //[\w <>,], what may appear in a type or parameter list
+	private static final byte[] CLASSES = new byte[128];
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++) CLASSES[c] = WORD | TYPE;
+		for (char c = 'A'; c <= 'Z'; c++) CLASSES[c] = WORD | TYPE;
+		for (char c = '0'; c <= '9'; c++) CLASSES[c] = WORD | TYPE;
+		CLASSES['_'] = WORD | TYPE;
+		CLASSES[' '] = SPACE | HORIZONTAL | TYPE;
+		CLASSES['\t'] = SPACE | HORIZONTAL;
+		CLASSES['\n'] = SPACE;
+		CLASSES[0x0B] = SPACE;
+		CLASSES['\f'] = SPACE;
+		CLASSES['\r'] = SPACE;
+		CLASSES['<'] = TYPE;
+		CLASSES['>'] = TYPE;
+		CLASSES[','] = TYPE;
+	}
+
+	//states of the parameter list automaton, one group is [\w <>,]+\h+\w+,?\h*
+	private static final int GROUP_START = 1;
+	private static final int IN_TYPE = 2;
+	private static final int IN_GAP = 4;
+	private static final int IN_NAME = 8;
+	private static final int AFTER_COMMA = 16;
+	private static final int IN_TRAILING = 32;
+	private static final int GROUP_DONE = GROUP_START | IN_NAME | AFTER_COMMA | IN_TRAILING;
+
+	private CharSequence line;
+	private int length;
+
+	private int firstNonSpace; //length if the line is blank
+	private boolean semicolon, commentEnd;
+	private boolean openBracket, openBracketInString;
+	private boolean closeBracket, closeBracketInString;
+	private int methodStart, methodEnd; //group 1 of the old method pattern, methodStart is -1 if there was no match
+	private int controlStart, controlEnd; //group 1 of the old control pattern, controlStart is -1 if there was no match
+
+	/**
+	 * Scans a line and records everything the predicates need.
+	 */
+	void classify(CharSequence line) {
+		scan(line, true);
+	}
+	
+	/**
+	 * Scans a line for comments, braces and semicolons only. It is never a method header or control structure.
+	 */
+	void classifyLong(CharSequence line) {
+		scan(line, false);
+	}
+	
+	/**
+	 * @param full false to skip looking for method headers and control structures
+	 */
+	private void scan(CharSequence line, boolean full) {
+		this.line = line;
+		length = line.length();
+
+		firstNonSpace = length;
+		semicolon = false;
+		commentEnd = false;
+		openBracket = false;
+		closeBracket = false;
+		methodStart = -1;
+
+		int firstQuote = -1, lastQuote = -1;
+		int firstOpenAfterQuote = -1, firstCloseAfterQuote = -1;
+		int lastCloseParen = -1;
+
+		for (int i = 0; i < length; i++) {
+			char c = line.charAt(i);
+			if (firstNonSpace == length && !isSpace(c)) {
+				firstNonSpace = i;
+			}
+
+			switch (c) {
+			case '"':
+				if (firstQuote < 0) firstQuote = i;
+				lastQuote = i;
+				break;
+			case '{':
+				openBracket = true;
+				if (firstQuote >= 0 && firstOpenAfterQuote < 0) firstOpenAfterQuote = i;
+				break;
+			case '}':
+				closeBracket = true;
+				if (firstQuote >= 0 && firstCloseAfterQuote < 0) firstCloseAfterQuote = i;
+				break;
+			case ';':
+				semicolon = true;
+				break;
+			case '/':
+				if (i > 0 && line.charAt(i-1) == '*') commentEnd = true;
+				break;
+			case '(':
+				if (!full) break;
+				int end = methodHeaderEnd(i);
+				if (end >= 0) {
+					methodStart = methodNameStart(i);
+					methodEnd = end;
+				}
+				break;
+			case ')':
+				lastCloseParen = i;
+				break;
+			}
+		}
+
+		openBracketInString = firstOpenAfterQuote >= 0 && firstOpenAfterQuote < lastQuote;
+		closeBracketInString = firstCloseAfterQuote >= 0 && firstCloseAfterQuote < lastQuote;
+
+		if (full) {
+			findControlName(lastCloseParen);
+		}
+		else {
+			controlStart = -1;
+		}
+	}
+
+	boolean isWhitespace() {
+		return firstNonSpace == length;
+	}
+
+	boolean isSingleLineComment() {
+		return startsWithAfterSpace('/', '/');
+	}
+
+	boolean isMultiCommentBegin() {
+		return startsWithAfterSpace('/', '*');
+	}
+
+	boolean isMultiCommentEnd() {
+		return commentEnd;
+	}
+
+	boolean isMethod() {
+		return methodStart >= 0;
+	}
+
+	/**
+	 * Name and parameter list of the method declared on the line, only valid if isMethod() is true.
+	 */
+	String methodName() {
+		return line.subSequence(methodStart, methodEnd).toString();
+	}
+
+	/**
+	 * Looks the method name up in a table without creating a String for it, only valid if isMethod() is true.
+	 * @return the name's id in table
+	 */
+	int internMethodName(CountTable table) {
+		return table.intern(line, methodStart, methodEnd);
+	}
+
+	boolean isControlStructure() {
+		return controlStart >= 0;
+	}
+
+	/**
+	 * Words before the parenthesis of the control structure, only valid if isControlStructure() is true.
+	 */
+	String controlName() {
+		return line.subSequence(controlStart, controlEnd).toString();
+	}
+
+	/**
+	 * Looks the control name up in a table without creating a String for it, only valid if isControlStructure() is true.
+	 * @return the name's id in table
+	 */
+	int internControlName(CountTable table) {
+		return table.intern(line, controlStart, controlEnd);
+	}
+
+	/**
+	 * True for "else" alone on a line, optionally followed by an opening brace.
+	 */
+	boolean isElse() {
+		int i = firstNonSpace;
+		if (length - i < 4 || line.charAt(i) != 'e' || line.charAt(i+1) != 'l' || line.charAt(i+2) != 's' || line.charAt(i+3) != 'e') {
+			return false;
+		}
+		i += 4;
+		while (i < length && isSpace(line.charAt(i))) i++;
+		if (i < length && line.charAt(i) == '{') i++;
+		return i == length;
+	}
+
+	boolean hasSemicolon() {
+		return semicolon;
+	}
+
+	/**
+	 * True if the line has a '{' that isn't between two quotes.
+	 */
+	boolean hasOpeningBracket() {
+		return openBracket && !openBracketInString;
+	}
+
+	/**
+	 * True if the line has a '}' that isn't between two quotes.
+	 */
+	boolean hasClosingBracket() {
+		return closeBracket && !closeBracketInString;
+	}
+
+
+	private boolean startsWithAfterSpace(char first, char second) {
+		return firstNonSpace + 1 < length && line.charAt(firstNonSpace) == first && line.charAt(firstNonSpace+1) == second;
+	}
+
+	/**
+	 * Checks whether the parenthesis at paren starts a method header: a name preceded by a type,
+	 * and a parameter list of "Type name" pairs closed on the same line.
+	 * @return index after the closing parenthesis, or -1 if it isn't a method header
+	 */
+	private int methodHeaderEnd(int paren) {
+		int nameEnd = paren;
+		while (nameEnd > 0 && isHorizontal(line.charAt(nameEnd-1))) nameEnd--;
+		int nameStart = nameEnd;
+		while (nameStart > 0 && isWord(line.charAt(nameStart-1))) nameStart--;
+		if (nameStart == nameEnd) {
+			return -1;
+		}
+
+		//the name needs whitespace before it, and before that something that can end a type
+		int gapStart = nameStart;
+		while (gapStart > 0 && isHorizontal(line.charAt(gapStart-1))) gapStart--;
+		if (gapStart == nameStart) {
+			return -1;
+		}
+		boolean typeBeforeGap = false;
+		for (int i = gapStart; i < nameStart - 1; i++) {
+			if (line.charAt(i) == ' ') {
+				typeBeforeGap = true; //a space counts as part of the type
+				break;
+			}
+		}
+		if (!typeBeforeGap && gapStart > 0) {
+			typeBeforeGap = isType(line.charAt(gapStart-1)) && !endsWithNew(gapStart);
+		}
+		if (!typeBeforeGap) {
+			return -1;
+		}
+
+		int states = GROUP_START;
+		int i = paren + 1;
+		for (; i < length; i++) {
+			char c = line.charAt(i);
+			if (!isType(c) && !isHorizontal(c)) {
+				break;
+			}
+			states = nextParameterStates(states, c);
+		}
+		if (i < length && line.charAt(i) == ')' && (states & GROUP_DONE) != 0) {
+			return i + 1;
+		}
+		return -1;
+	}
+
+	private int methodNameStart(int paren) {
+		int i = paren;
+		while (i > 0 && isHorizontal(line.charAt(i-1))) i--;
+		while (i > 0 && isWord(line.charAt(i-1))) i--;
+		return i;
+	}
+
+	private boolean endsWithNew(int end) {
+		return end >= 3 && line.charAt(end-3) == 'n' && line.charAt(end-2) == 'e' && line.charAt(end-1) == 'w';
+	}
+
+	private static int nextParameterStates(int states, char c) {
+		boolean type = isType(c), horizontal = isHorizontal(c), word = isWord(c);
+		int next = 0;
+		if ((states & GROUP_DONE) != 0 && type) next |= IN_TYPE;
+		if ((states & IN_TYPE) != 0) {
+			if (type) next |= IN_TYPE;
+			if (horizontal) next |= IN_GAP;
+		}
+		if ((states & IN_GAP) != 0) {
+			if (horizontal) next |= IN_GAP;
+			if (word) next |= IN_NAME;
+		}
+		if ((states & IN_NAME) != 0) {
+			if (word) next |= IN_NAME;
+			if (c == ',') next |= AFTER_COMMA;
+			if (horizontal) next |= IN_TRAILING;
+		}
+		if ((states & (AFTER_COMMA | IN_TRAILING)) != 0 && horizontal) next |= IN_TRAILING;
+		return next;
+	}
+
+	/**
+	 * A control structure is a line starting with space separated words and a parenthesis,
+	 * closed later on the line, that doesn't end with a semicolon.
+	 */
+	private void findControlName(int lastCloseParen) {
+		controlStart = -1;
+		int i = firstNonSpace;
+		if (i == length || !isWord(line.charAt(i))) {
+			return;
+		}
+		while (true) {
+			while (i < length && isWord(line.charAt(i))) i++;
+			if (i + 1 < length && line.charAt(i) == ' ' && isWord(line.charAt(i+1))) {
+				i++;
+			}
+			else {
+				break;
+			}
+		}
+		int nameEnd = i;
+		while (i < length && isSpace(line.charAt(i))) i++;
+		if (i < length && line.charAt(i) == '(' && lastCloseParen > i && line.charAt(length-1) != ';') {
+			controlStart = firstNonSpace;
+			controlEnd = nameEnd;
+		}
+	}
+
+	private static boolean isWord(char c) {
+		return c < 128 && (CLASSES[c] & WORD) != 0;
+	}
+
+	private static boolean isSpace(char c) {
+		return c < 128 && (CLASSES[c] & SPACE) != 0;
+	}
+
+	private static boolean isType(char c) {
+		return c < 128 && (CLASSES[c] & TYPE) != 0;
+	}
+
+	private static boolean isHorizontal(char c) {
+		if (c < 128) {
+			return (CLASSES[c] & HORIZONTAL) != 0;
+		}
+		return c == '\u00A0' || c == '\u1680' || c == '\u180e' || (c >= '\u2000' && c <= '\u200a')
+				|| c == '\u202f' || c == '\u205f' || c == '\u3000';
+	}
+}
@@ -1,13 +1,11 @@
 package linecounterapp;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -17,61 +15,35 @@ import javafx.collections.ObservableList;
  * Class to analyze .java files and store data about their contents.
  */
 public class LineCounter {
-	HashMap<String, Integer> methodCounts; //tallies number of lines in method definitions
-	HashMap<String, Integer> controlCounts; //tallies number of times each control type is used
+	/** Lines longer than this many bytes are only checked for comments and braces, see setMaxLineLength. */
+	public static final int DEFAULT_MAX_LINE_LENGTH = 8192;
+	private static final int LINES_PER_CHECK = 4096; //lines read between progress reports and checks for interruption
+	
+	MethodSpans methods; //where each method definition is and how many lines it has
+	CountTable controlCounts; //tallies number of times each control type is used
 
 	int linecount;
 	int nonCodeLines;
+	int filecount;
+	int longLines; //lines over the maximum length, which got the cheaper classification
 	
-	private Matcher singleCommentMatcher, multiCommentBeginMatcher, multiCommentEndMatcher;
-	private Matcher whitespaceMatcher;
-	private Matcher methodMatcher;
-	private Matcher elseMatcher;
-	private Matcher controlMatcher; //also matches methods, so should be used only if methodMatcher didn't match
-	private Matcher openBracketMatcher, openBracketInStringMatcher;
-	private Matcher closeBracketMatcher, closeBracketInStringMatcher;
-	private Matcher semicolonMatcher;
+	private LineClassifier classifier;
+	private ByteLineReader reader;
+	private LineCounterListener listener; //null if nobody is listening
+	private final AnalysisMetrics metrics = AnalysisMetrics.get();
 	
 	public LineCounter() {
-		methodCounts = new HashMap<String, Integer>();
-		controlCounts = new HashMap<String, Integer>();
+		methods = new MethodSpans();
+		controlCounts = new CountTable();
 		
 		linecount = 0;
 		nonCodeLines = 0;
+		filecount = 0;
+		longLines = 0;
 		
-		Pattern singleCommentPattern = Pattern.compile("^\\s*//.*$");
-		singleCommentMatcher = singleCommentPattern.matcher("");
-		
-		Pattern multiCommentBeginPattern = Pattern.compile("^\\s*/\\*.*$");
-		multiCommentBeginMatcher = multiCommentBeginPattern.matcher("");
-		
-		Pattern multiCommentEndPattern = Pattern.compile("^.*\\*/.*$");
-		multiCommentEndMatcher = multiCommentEndPattern.matcher("");
-		
-		Pattern whitespacePattern = Pattern.compile("^\\s*$");
-		whitespaceMatcher = whitespacePattern.matcher("");
-		
-		Pattern methodPattern = Pattern.compile("^\\h*.*[\\w <>,]+(?<!new)\\h+(\\w+\\h*\\((?:[\\w <>,]+\\h+\\w+,?\\h*)*\\)).*$");
-		methodMatcher = methodPattern.matcher("");
-		
-		Pattern elsePattern = Pattern.compile("^\\s*else\\s*\\{?$");
-		elseMatcher = elsePattern.matcher("");
-		
-		Pattern controlPattern = Pattern.compile("^\\s*(\\w+(?: \\w+)*)\\s*\\(.*\\).*$(?<!;)");
-		controlMatcher = controlPattern.matcher("");
-		
-		Pattern openBracketPattern = Pattern.compile("^.*\\{.*$");
-		openBracketMatcher = openBracketPattern.matcher("");
-		Pattern openBracketInStringPattern = Pattern.compile("^.*\\\".*\\{.*\\\".*$");
-		openBracketInStringMatcher = openBracketInStringPattern.matcher("");
-		
-		Pattern closeBracketPattern = Pattern.compile("^.*\\}.*$");
-		closeBracketMatcher = closeBracketPattern.matcher("");
-		Pattern closeBracketInStringPattern = Pattern.compile("^.*\\\".*\\}.*\\\".*$");
-		closeBracketInStringMatcher = closeBracketInStringPattern.matcher("");
-
-		Pattern semicolonPattern = Pattern.compile("^.*;.*$");
-		semicolonMatcher = semicolonPattern.matcher("");
+		classifier = new LineClassifier();
+		reader = new ByteLineReader();
+		reader.setMaxLineLength(DEFAULT_MAX_LINE_LENGTH);
 	}
 	
 	/**
@@ -79,59 +51,157 @@ public class LineCounter {
 	 * Counts number of lines, not including blank lines or comments.
 	 * Gets method names and shows number of lines in each.
 	 * Counts and returns table providing the counts of while, for, if, else if, else, and switch statements used
+	 * If the thread is interrupted, reading stops early and the counts so far are kept. The interrupt stays set.
 	 */
 	public String analyzeFile(File file) {
+		FileAnalyzedEvent event = new FileAnalyzedEvent();
+		event.begin();
+		AnalysisPhaseEvent read = AnalysisPhaseEvent.start(AnalysisPhaseEvent.READ, file.getPath());
 		try {
-			Scanner reader = new Scanner(file);
-			return readFile(reader);
-		} catch (FileNotFoundException e) {
+			reader.open(file.toPath());
+		} catch (NoSuchFileException e) {
 			return "File not found: "+e.toString();
+		} catch (IOException e) {
+			return "Could not read file: "+e.toString();
 		}
+		metrics.readNanos.add(read.finish(reader.bytesTotal()));
+		return readFile(reader, file.getPath(), event);
+	}
+	
+	/**
+	 * Same as analyzeFile, for UTF-8 source that is already in memory.
+	 * @param bytes source to analyze, from its position to its limit. The position isn't changed.
+	 */
+	public String analyzeBytes(ByteBuffer bytes) {
+		return analyzeBytes(bytes, "(in memory)");
+	}
+	
+	/**
+	 * @param path where the bytes came from, for the metrics events
+	 */
+	String analyzeBytes(ByteBuffer bytes, String path) {
+		FileAnalyzedEvent event = new FileAnalyzedEvent();
+		event.begin();
+		reader.open(bytes);
+		return readFile(reader, path, event);
+	}
+	
+	/**
+	 * Sends what is found to a listener while files are read, instead of only when they are done.
+	 * @param listener listener to notify, or null to stop notifying
+	 */
+	public void setListener(LineCounterListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Sets how long a line may be before it is only checked for comments, braces and semicolons.
+	 * Generated or minified sources can have lines of many kilobytes that are never method headers anyway;
+	 * this keeps them from costing more than a quick scan. Long lines are counted in the summary.
+	 * @param bytes maximum length in bytes of a fully analyzed line
+	 */
+	public void setMaxLineLength(int bytes) {
+		reader.setMaxLineLength(bytes);
+	}
+	
+	/**
+	 * Clears all counts, so the instance can analyze more files as if it were new.
+	 * Its buffers and tables keep their size, which saves growing them again for each of many small files.
+	 * The listener and maximum line length are kept.
+	 */
+	public void reset() {
+		methods.clear();
+		controlCounts.clear();
+		linecount = 0;
+		nonCodeLines = 0;
+		filecount = 0;
+		longLines = 0;
 	}
 	
 	/**
 	 * This code is arguably still readable
 	 * @param reader
+	 * @param path file being read, for the metrics events
+	 * @param event event begun when the file was opened
 	 * @return
 	 */
-	private String readFile(Scanner reader) {
+	private String readFile(ByteLineReader reader, String path, FileAnalyzedEvent event) {
 		//Variables to keep track of methods
-		String currentMethod = "";
+		int currentMethod = -1; //span of the method in methods
+		int methodStart = 0; //linecount when the method body opened
+		int deepestBraces = 0;
 		int unclosedBraces = 0; //counts number of unclosed braces left in method definition
 		boolean expectingMethodOpeningBracket = false;
 		boolean withinMethod = false;
 		
 		boolean withinMultiComment = false;
+		int lineNumber = 0;
+		
+		//counts for the metrics, added to them once the file is done
+		int blank = 0, comment = 0, controls = 0;
+		int firstLine = linecount, firstLong = longLines, firstSpan = methods.size();
+		long sampledNanos = 0;
+		AnalysisPhaseEvent scan = AnalysisPhaseEvent.start(AnalysisPhaseEvent.SCAN, path);
 		
+		filecount++;
 		
-		while (reader.hasNextLine()) {
-			String line = reader.nextLine();
+		while (reader.nextLine()) {
+			boolean sampled = (lineNumber & (AnalysisMetrics.SAMPLE_EVERY - 1)) == 0;
+			long classifyStart = sampled ? System.nanoTime() : 0;
+			if (reader.isLongLine()) {
+				classifier.classifyLong(reader.line());
+				longLines++;
+			}
+			else {
+				classifier.classify(reader.line());
+			}
+			if (sampled) {
+				sampledNanos += System.nanoTime() - classifyStart;
+			}
+			lineNumber++;
+			if (lineNumber % LINES_PER_CHECK == 0) {
+				if (Thread.currentThread().isInterrupted()) {
+					break;
+				}
+				if (listener != null) {
+					listener.progress(reader.bytesRead(), reader.bytesTotal());
+				}
+			}
 			
 			//not-code lines
+			boolean code = false;
 			if (withinMultiComment) {
-				nonCodeLines++;
-				if (isMultiCommentEnd(line)) {
+				if (classifier.isMultiCommentEnd()) {
 					withinMultiComment = false;
 				}
-				continue;
+				comment++;
 			}
 			
-			else if (isWhitespace(line)) {
-				nonCodeLines++;
-				continue;
+			else if (classifier.isWhitespace()) {
+				blank++;
 			}
 			
-			else if (isSingleLineComment(line)) {
-				nonCodeLines++;
-				continue;
+			else if (classifier.isSingleLineComment()) {
+				comment++;
 			}
 			
-			else if (isMultiCommentBegin(line)) {
-				nonCodeLines++;
-				if (!isMultiCommentEnd(line)) {
+			else if (classifier.isMultiCommentBegin()) {
+				if (!classifier.isMultiCommentEnd()) {
 					withinMultiComment = true;
 				}
-				continue; 
+				comment++;
+			}
+			
+			else {
+				code = true;
+			}
+			
+			if (listener != null) {
+				listener.lineClassified(lineNumber, code);
+			}
+			if (!code) {
+				nonCodeLines++;
+				continue;
 			}
 			
 			
@@ -139,8 +209,10 @@ public class LineCounter {
 			linecount++;
 			
 			if (expectingMethodOpeningBracket) {
-				if (hasOpeningBracket(line)) {
+				if (classifier.hasOpeningBracket()) {
 					unclosedBraces = 1;
+					deepestBraces = 1;
+					methodStart = linecount;
 					expectingMethodOpeningBracket = false;
 					withinMethod = true;
 				}
@@ -148,27 +220,33 @@ public class LineCounter {
 			}
 			
 			if (withinMethod) {
-				if (hasOpeningBracket(line)) {
+				if (classifier.hasOpeningBracket()) {
 					unclosedBraces++;
+					deepestBraces = Math.max(deepestBraces, unclosedBraces);
 				}
-				if (hasClosingBracket(line)) {
+				if (classifier.hasClosingBracket()) {
 					unclosedBraces--;
 					if (unclosedBraces < 1) {
 						withinMethod = false;
+						closeMethod(currentMethod, lineNumber, linecount - methodStart, deepestBraces);
 					}
 				}
-				methodCounts.replace(currentMethod, methodCounts.get(currentMethod)+1);
 			}
 			
-			else if (isMethod(line)) {
-				currentMethod = methodMatcher.group(1);
-				methodCounts.put(currentMethod, 0);
+			else if (classifier.isMethod()) {
+				currentMethod = methods.add(classifier.internMethodName(methods.names), lineNumber);
+				if (listener != null) {
+					listener.methodFound(methods.displayName(currentMethod), lineNumber);
+				}
 				
-				if (hasSemicolon(line)) {
+				if (classifier.hasSemicolon()) {
+					closeMethod(currentMethod, lineNumber, 0, 0);
 					continue;
 				}
-				else if (hasOpeningBracket(line)) {
+				else if (classifier.hasOpeningBracket()) {
 					unclosedBraces = 1;
+					deepestBraces = 1;
+					methodStart = linecount;
 					withinMethod = true;
 				}
 				else {
@@ -178,134 +256,287 @@ public class LineCounter {
 				continue;
 			}
 			
-			if (isElse(line)) {
-				if (controlCounts.get("else") == null) {
-					controlCounts.put("else", 1);
-				}
-				else {
-					controlCounts.replace("else", controlCounts.get("else")+1);
-				}
+			if (classifier.isElse()) {
+				countControl(controlCounts.intern("else"));
+				controls++;
 				continue;
 			}
 			
-			else if (isControlStructure(line)) {
-				String name = controlMatcher.group(1);
-				if (controlCounts.get(name) == null) {
-					controlCounts.put(name, 1);
-				}
-				else {
-					controlCounts.replace(name, controlCounts.get(name)+1);
-				}
+			else if (classifier.isControlStructure()) {
+				countControl(classifier.internControlName(controlCounts));
+				controls++;
 			}
 		}
 		
-		return "Stripped Line Count: "+linecount+
-				"\nEmpty Lines: "+nonCodeLines;
+		if (withinMethod) {
+			//file ended inside a method, count it up to the end
+			closeMethod(currentMethod, lineNumber, linecount - methodStart, deepestBraces);
+		}
+		else if (expectingMethodOpeningBracket) {
+			closeMethod(currentMethod, methods.get(currentMethod, MethodSpans.START_LINE), 0, 0);
+		}
+		if (listener != null) {
+			listener.progress(reader.bytesRead(), reader.bytesTotal());
+		}
+		
+		int fileCode = linecount - firstLine, fileLong = longLines - firstLong;
+		metrics.scanNanos.add(scan.finish(reader.bytesRead()));
+		metrics.sampledClassifyNanos.add(sampledNanos);
+		metrics.sampledLines.add((lineNumber + AnalysisMetrics.SAMPLE_EVERY - 1) / AnalysisMetrics.SAMPLE_EVERY);
+		metrics.files.increment();
+		metrics.bytes.add(reader.bytesRead());
+		metrics.lines.add(lineNumber);
+		metrics.codeLines.add(fileCode);
+		metrics.blankLines.add(blank);
+		metrics.commentLines.add(comment);
+		metrics.longLines.add(fileLong);
+		metrics.methodHeaders.add(methods.size() - firstSpan);
+		metrics.controlStructures.add(controls);
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.path = path;
+			event.bytes = reader.bytesRead();
+			event.lines = lineNumber;
+			event.codeLines = fileCode;
+			event.methods = methods.size() - firstSpan;
+			event.longLines = fileLong;
+			event.commit();
+		}
+		
+		return getSummary();
+	}
+	
+	private void closeMethod(int span, int endLine, int codeLines, int depth) {
+		methods.close(span, endLine, codeLines, depth);
+		if (listener != null) {
+			listener.methodClosed(methods.displayName(span), methods.get(span, MethodSpans.START_LINE), endLine, codeLines);
+		}
+	}
+	
+	private void countControl(int id) {
+		controlCounts.increment(id);
+		if (listener != null) {
+			listener.controlFound(controlCounts.name(id));
+		}
 	}
 	
 	/**
-	 * Returns an ObservableList&ltCountValue&gt of the methods in the file. Meant for use with javafx tables.
-	 * @return Counts of method lengths in the form of an ObservableList&ltCountValue&gt
+	 * Sends every method and control structure counted so far to a listener, as if they were being read now.
+	 * Lines aren't sent again.
 	 */
-	public ObservableList<CountValue> getMethodsList() {
-		ArrayList<CountValue> list = new ArrayList<CountValue>();
-		
-		ArrayList<String> keys = new ArrayList<String>(methodCounts.keySet());
-		Collections.sort(keys);
-		
-		for (String key : keys) {
-			list.add(new CountValue(key, methodCounts.get(key)));
+	void replay(LineCounterListener listener) {
+		for (int span = 0; span < methods.size(); span++) {
+			String name = methods.displayName(span);
+			int startLine = methods.get(span, MethodSpans.START_LINE);
+			listener.methodFound(name, startLine);
+			listener.methodClosed(name, startLine, methods.get(span, MethodSpans.END_LINE), methods.get(span, MethodSpans.CODE_LINES));
+		}
+		for (String type : controlCounts.sortedNames()) {
+			for (int i = controlCounts.get(type); i > 0; i--) {
+				listener.controlFound(type);
+			}
 		}
-		
-		return FXCollections.observableArrayList(list);
 	}
 	
 	/**
-	 * Returns an ObservableList&ltCountValue&gt of the counts of control structures in the file. Meant for use with javafx tables.
-	 * @return Counts of control structures in the form of an ObservableList&ltCountValue&gt
+	 * Returns the line totals in the same form analyzeFile does. Files are only listed when more than one was counted.
 	 */
-	public ObservableList<CountValue> getControlList() {
-		ArrayList<CountValue> list = new ArrayList<CountValue>();
-		
-		ArrayList<String> keys = new ArrayList<String>(controlCounts.keySet());
-		Collections.sort(keys);
-		
-		for (String key : keys) {
-			list.add(new CountValue(key, controlCounts.get(key)));
+	public String getSummary() {
+		String summary = "Stripped Line Count: "+linecount+
+				"\nEmpty Lines: "+nonCodeLines;
+		if (filecount > 1) {
+			summary = "Files: "+filecount+"\n"+summary;
 		}
-		
-		return FXCollections.observableArrayList(list);
+		if (longLines > 0) {
+			summary += "\nLong Lines (not checked for methods or control structures): "+longLines;
+		}
+		return summary;
 	}
 	
 	/**
-	 * Creates a text table of a count hashmap.
-	 * @param label1 Title of first column (the names)
-	 * @param label2 Title of second column (the counts)
-	 * @param map
-	 * @return
+	 * Adds the counts of another LineCounter to this one.
+	 * Counts for names present in both are summed, so merging is associative and results can be combined in any grouping.
+	 * @param other counter to add, left unchanged
 	 */
-	private String formatCountHashmap(String label1, String label2, HashMap<String, Integer> map) {
-		String table = String.format("%-50s | %-10s", label1.toUpperCase(), label2.toUpperCase());
-		
-		ArrayList<String> keys = new ArrayList<String>(map.keySet());
-		Collections.sort(keys);
+	public void merge(LineCounter other) {
+		mergeTotals(other);
+		methods.addAll(other.methods);
+		controlCounts.addAll(other.controlCounts);
+	}
+	
+	/**
+	 * Adds the line and file counts of another LineCounter to this one, leaving out its methods and control structures.
+	 */
+	public void mergeTotals(LineCounter other) {
+		linecount += other.linecount;
+		nonCodeLines += other.nonCodeLines;
+		filecount += other.filecount;
+		longLines += other.longLines;
+	}
+	
+	/**
+	 * Takes back the counts of a counter that was merged into this one earlier.
+	 * Control types whose count drops to zero are removed. Methods are removed by the source
+	 * other's methods came from, so this relies on qualifyMethods having given each file its own label.
+	 * @param other counter to take away, left unchanged
+	 */
+	public void subtract(LineCounter other) {
+		linecount -= other.linecount;
+		nonCodeLines -= other.nonCodeLines;
+		filecount -= other.filecount;
+		longLines -= other.longLines;
 		
-		for (String key : keys) {
-			table += String.format("\n%-50s | %-10s", key, map.get(key));
+		methods.removeSources(other.methods);
+		controlCounts.subtractAll(other.controlCounts);
+	}
+	
+	/**
+	 * Labels every method with its source, normally the file the methods came from.
+	 * The label is shown in front of the method name.
+	 * @param label
+	 */
+	public void qualifyMethods(String label) {
+		methods.setSource(label);
+	}
+	
+	/**
+	 * Writes the counts in a compact binary form that readFrom can read back.
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(linecount);
+		out.writeInt(nonCodeLines);
+		out.writeInt(filecount);
+		out.writeInt(longLines);
+		methods.writeTo(out);
+		writeCounts(out, controlCounts);
+	}
+	
+	/**
+	 * Reads counts written by writeTo.
+	 */
+	public static LineCounter readFrom(DataInput in) throws IOException {
+		LineCounter counter = new LineCounter();
+		counter.linecount = in.readInt();
+		counter.nonCodeLines = in.readInt();
+		counter.filecount = in.readInt();
+		counter.longLines = in.readInt();
+		counter.methods.readFrom(in);
+		readCounts(in, counter.controlCounts);
+		return counter;
+	}
+	
+	private static void writeCounts(DataOutput out, CountTable map) throws IOException {
+		out.writeInt(map.size());
+		for (String key : map.sortedNames()) {
+			out.writeUTF(key);
+			out.writeInt(map.get(key));
 		}
-		
-		return table;
 	}
 	
-	private boolean isSingleLineComment(String line) {
-		singleCommentMatcher.reset(line);
-		return singleCommentMatcher.matches();
+	private static void readCounts(DataInput in, CountTable map) throws IOException {
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			String key = in.readUTF();
+			map.put(key, in.readInt());
+		}
 	}
 	
-	private boolean isMultiCommentBegin(String line) {
-		multiCommentBeginMatcher.reset(line);
-		return multiCommentBeginMatcher.matches();
+	/**
+	 * Passes every method to a visitor with its code lines, sorted by name.
+	 * Methods with the same name are passed separately, in the order they were found.
+	 */
+	<E extends Exception> void visitMethods(RowVisitor<E> visitor) throws E {
+		for (int span : methods.sortedByName()) {
+			visitor.row(methods.displayName(span), methods.get(span, MethodSpans.CODE_LINES));
+		}
 	}
 	
-	private boolean isMultiCommentEnd(String line) {
-		multiCommentEndMatcher.reset(line);
-		return multiCommentEndMatcher.matches();
+	/**
+	 * Passes every control type to a visitor with its count, sorted by name.
+	 */
+	<E extends Exception> void visitControls(RowVisitor<E> visitor) throws E {
+		for (String key : controlCounts.sortedNames()) {
+			visitor.row(key, controlCounts.get(key));
+		}
 	}
 	
-	private boolean isWhitespace(String line) {
-		whitespaceMatcher.reset(line);
-		return whitespaceMatcher.matches();
+	/**
+	 * Writes the section of a report for this counter: its totals, the method table and the control table.
+	 * @param summary as returned when the counts were made
+	 */
+	void writeReport(ReportWriter out, String path, String summary) throws IOException {
+		out.section(path, summary, this);
+		out.beginTable("methods", null, "Method", "Lines");
+		visitMethods((name, count) -> out.row(name, count));
+		out.endTable();
+		out.beginTable("controls", null, "Control Type", "Count");
+		visitControls((name, count) -> out.row(name, count));
+		out.endTable();
 	}
 	
-	private boolean isMethod(String line) {
-		methodMatcher.reset(line);
-		return methodMatcher.matches();
+	/**
+	 * Writes a table of the given methods with their code lines, where they are and how deeply they nest.
+	 * @param spans methods to list, in order, as returned by longestMethods or methodsOver
+	 */
+	void writeMethodSpans(ReportWriter out, String table, String title, int[] spans) throws IOException {
+		out.beginTable(table, title, "Method", "Lines", "Start", "End", "Depth");
+		for (int span : spans) {
+			out.row(methods.displayName(span), methods.get(span, MethodSpans.CODE_LINES),
+					methods.get(span, MethodSpans.START_LINE), methods.get(span, MethodSpans.END_LINE),
+					methods.get(span, MethodSpans.DEPTH));
+		}
+		out.endTable();
 	}
 	
-	private boolean isControlStructure(String line) {
-		controlMatcher.reset(line);
-		return controlMatcher.matches();
+	/**
+	 * Returns an ObservableList&ltCountValue&gt of the methods in the file. Meant for use with javafx tables.
+	 * @return Counts of method lengths in the form of an ObservableList&ltCountValue&gt
+	 */
+	public ObservableList<CountValue> getMethodsList() {
+		ObservableList<CountValue> list = FXCollections.observableArrayList();
+		visitMethods((name, count) -> list.add(new CountValue(name, count)));
+		return list;
 	}
 	
-	private boolean isElse(String line) {
-		elseMatcher.reset(line);
-		return elseMatcher.matches();
+	/**
+	 * Returns an ObservableList&ltCountValue&gt of the counts of control structures in the file. Meant for use with javafx tables.
+	 * @return Counts of control structures in the form of an ObservableList&ltCountValue&gt
+	 */
+	public ObservableList<CountValue> getControlList() {
+		ObservableList<CountValue> list = FXCollections.observableArrayList();
+		visitControls((name, count) -> list.add(new CountValue(name, count)));
+		return list;
 	}
 	
-	private boolean hasSemicolon(String line) {
-		semicolonMatcher.reset(line);
-		return semicolonMatcher.matches();
+	/**
+	 * Creates a text table of a count table.
+	 * @param label1 Title of first column (the names)
+	 * @param label2 Title of second column (the counts)
+	 * @param map
+	 * @return
+	 */
+	String formatCountHashmap(String label1, String label2, CountTable map) {
+		StringBuilder table = new StringBuilder(String.format("%-50s | %-10s", label1.toUpperCase(), label2.toUpperCase()));
+		
+		for (String key : map.sortedNames()) {
+			table.append(String.format("\n%-50s | %-10s", key, map.get(key)));
+		}
+		
+		return table.toString();
 	}
 	
-	private boolean hasOpeningBracket(String line) {
-		openBracketMatcher.reset(line);
-		openBracketInStringMatcher.reset(line);
-		return openBracketMatcher.matches() && !openBracketInStringMatcher.matches();
+	/**
+	 * @return spans of the n methods with the most code lines, longest first
+	 */
+	int[] longestMethods(int n) {
+		return methods.longest(n);
 	}
 	
-	private boolean hasClosingBracket(String line) {
-		closeBracketMatcher.reset(line);
-		closeBracketInStringMatcher.reset(line);
-		return closeBracketMatcher.matches() && !closeBracketInStringMatcher.matches();
+	/**
+	 * @return spans of the methods with at least minLines code lines, longest first
+	 */
+	int[] methodsOver(int minLines) {
+		return methods.atLeast(minLines);
 	}
 }
@@ -0,0 +1,544 @@
+package linecounterapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+
+
+/**
+ * Command line entry point that analyzes files and folders without starting JavaFX.
+ * Nothing here may touch CountValue or the ObservableList methods of LineCounter,
+ * so no JavaFX class is ever loaded.
+ *
+ * Usage: linecounter [-o file] [--format f] [--threads n | --workers n] [--cache file] [--dedup] [--index file] [--watch] [--longest n] [--min-lines n] [--summary k] [--memory-budget mb] [--max-line-length n] [--metrics] path...
+ *        linecounter [-o file] [--format f] --git-range from..to repository
+ *        linecounter [-o file] [--format f] --query index [--longest n] [--min-lines n] [--control type]
+ */
+public class LineCounterCli {
+	private static final String USAGE = "Usage: linecounter [-o file] [--format f] [--threads n | --workers n] [--cache file] [--dedup] [--index file] [--watch] [--longest n] [--min-lines n] [--summary k] [--memory-budget mb] [--max-line-length n] [--metrics] path...\n"
+			+ "       linecounter [-o file] [--format f] --git-range from..to repository\n"
+			+ "       linecounter [-o file] [--format f] --query index [--longest n] [--min-lines n] [--control type]\n"
+			+ "  path          a .java file, a folder to search for .java files, or a .jar or .zip archive of sources\n"
+			+ "  -o file       write the report to file instead of standard output\n"
+			+ "  --format f    report format, one of "+ReportWriter.FORMATS+" (default: text)\n"
+			+ "  --threads n   number of threads used for folders (default: all cores)\n"
+			+ "  --workers n   analyze folders in n separate worker processes, each holding only its share of the files,\n"
+			+ "                with --memory-budget the merged results are kept within the budget too\n"
+			+ "  --cache file  reuse results of unchanged files from this cache, and update it\n"
+			+ "  --dedup       analyze files with the same contents only once, and report how many were skipped (not with --watch)\n"
+			+ "  --index file  write an index of every method and control structure of the folder to file,\n"
+			+ "                kept up to date with --watch\n"
+			+ "  --watch       keep running and print the report again whenever files in the folder change\n"
+			+ "  --longest n   also list the n longest methods with where they are and how deeply they nest\n"
+			+ "  --min-lines n also list every method with at least n code lines\n"
+			+ "  --summary k   instead of every method and control structure, only list the k longest methods,\n"
+			+ "                about the k most frequent control structures and quantiles of method length, in fixed memory\n"
+			+ "  --memory-budget mb\n"
+			+ "                keep about mb megabytes of methods in memory for a folder or archive, and sort the rest\n"
+			+ "                into temporary files that are merged for the report\n"
+			+ "  --max-line-length n\n"
+			+ "                lines longer than n bytes are only checked for comments and braces (default: "
+			+ LineCounter.DEFAULT_MAX_LINE_LENGTH + ")\n"
+			+ "  --metrics     publish counts and phase times over JMX while running, and print them to standard error\n"
+			+ "  --git-range from..to\n"
+			+ "                only report how methods and control structures changed between two revisions\n"
+			+ "                of a git repository, reading just the changed .java files from its object store\n"
+			+ "  --query index answer --longest and --min-lines from an index written by --index, without reading the sources\n"
+			+ "  --control type\n"
+			+ "                with --query, list the files using a control structure like if or switch, most uses first";
+
+	private boolean help;
+	private File output;
+	private String format = "text";
+	private File cacheFile;
+	private File indexFile;
+	private File queryFile; //index to answer queries from, null unless asked for
+	private String controlType; //null unless asked for
+	private boolean dedup;
+	private boolean watch;
+	private boolean metrics;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int workers; //0 unless worker processes were asked for
+	private int longest = -1; //-1 if not asked for
+	private int minLines = -1;
+	private int summaryK = -1; //-1 unless summary mode was asked for
+	private long memoryBudget = -1; //bytes, -1 unless asked for
+	private int maxLineLength = LineCounter.DEFAULT_MAX_LINE_LENGTH;
+	private String fromRevision, toRevision; //null unless a git range was given
+	private final List<File> paths = new ArrayList<File>();
+
+	public static void main(String[] args) {
+		System.exit(new LineCounterCli().run(args));
+	}
+
+	/**
+	 * Runs the tool.
+	 * @return exit code: 0 on success, 1 if a path couldn't be analyzed, 2 for bad arguments
+	 */
+	int run(String[] args) {
+		String error = parseArguments(args);
+		if (error != null) {
+			System.err.println(error);
+			System.err.println(USAGE);
+			return 2;
+		}
+		if (help) {
+			System.out.println(USAGE);
+			return 0;
+		}
+
+		if (metrics) {
+			AnalysisMetrics.register();
+		}
+		WritableByteChannel channel = null;
+		try {
+			channel = openOutput();
+			if (fromRevision != null) {
+				ReportWriter out = ReportWriter.forFormat(format, channel, false);
+				GitDeltaAnalyzer analyzer = new GitDeltaAnalyzer(paths.get(0));
+				analyzer.setMaxLineLength(maxLineLength);
+				analyzer.analyze(fromRevision, toRevision).writeReport(out, paths.get(0).toString());
+				out.flush();
+				return 0;
+			}
+			if (queryFile != null) {
+				return queryIndex(ReportWriter.forFormat(format, channel, false));
+			}
+			return analyzeAll(ReportWriter.forFormat(format, channel, paths.size() > 1));
+		} catch (IOException e) {
+			System.err.println("Error: "+e.toString());
+			return 1;
+		} finally {
+			closeOutput(channel);
+		}
+	}
+
+	/**
+	 * @return an error message, or null if the arguments are usable
+	 */
+	private String parseArguments(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("-o") || arg.equals("--output")) {
+				if (++i == args.length) return "Missing file after "+arg;
+				output = new File(args[i]);
+			}
+			else if (arg.equals("--format")) {
+				if (++i == args.length) return "Missing format after "+arg;
+				format = args[i];
+				if (ReportWriter.forFormat(format, null, false) == null) return "Unknown format: "+format;
+			}
+			else if (arg.equals("--cache")) {
+				if (++i == args.length) return "Missing file after "+arg;
+				cacheFile = new File(args[i]);
+			}
+			else if (arg.equals("--index")) {
+				if (++i == args.length) return "Missing file after "+arg;
+				indexFile = new File(args[i]);
+			}
+			else if (arg.equals("--query")) {
+				if (++i == args.length) return "Missing file after "+arg;
+				queryFile = new File(args[i]);
+			}
+			else if (arg.equals("--control")) {
+				if (++i == args.length) return "Missing type after "+arg;
+				controlType = args[i];
+			}
+			else if (arg.equals("--dedup")) {
+				dedup = true;
+			}
+			else if (arg.equals("--watch")) {
+				watch = true;
+			}
+			else if (arg.equals("--metrics")) {
+				metrics = true;
+			}
+			else if (arg.equals("--workers")) {
+				if (++i == args.length) return "Missing number after "+arg;
+				try {
+					workers = Integer.parseInt(args[i]);
+				} catch (NumberFormatException e) {
+					return "Not a number: "+args[i];
+				}
+				if (workers < 1) return "Worker count must be at least 1";
+			}
+			else if (arg.equals("--threads")) {
+				if (++i == args.length) return "Missing number after "+arg;
+				try {
+					threads = Integer.parseInt(args[i]);
+				} catch (NumberFormatException e) {
+					return "Not a number: "+args[i];
+				}
+				if (threads < 1) return "Thread count must be at least 1";
+			}
+			else if (arg.equals("--summary")) {
+				if (++i == args.length) return "Missing number after "+arg;
+				try {
+					summaryK = Integer.parseInt(args[i]);
+				} catch (NumberFormatException e) {
+					return "Not a number: "+args[i];
+				}
+				if (summaryK < 1) return "Summary size must be at least 1";
+			}
+			else if (arg.equals("--memory-budget")) {
+				if (++i == args.length) return "Missing number after "+arg;
+				long megabytes;
+				try {
+					megabytes = Long.parseLong(args[i]);
+				} catch (NumberFormatException e) {
+					return "Not a number: "+args[i];
+				}
+				if (megabytes < 1) return "Memory budget must be at least 1 megabyte";
+				memoryBudget = megabytes << 20;
+			}
+			else if (arg.equals("--longest") || arg.equals("--min-lines")) {
+				if (++i == args.length) return "Missing number after "+arg;
+				int n;
+				try {
+					n = Integer.parseInt(args[i]);
+				} catch (NumberFormatException e) {
+					return "Not a number: "+args[i];
+				}
+				if (n < 0) return arg+" can't be negative";
+				if (arg.equals("--longest")) {
+					longest = n;
+				}
+				else {
+					minLines = n;
+				}
+			}
+			else if (arg.equals("--max-line-length")) {
+				if (++i == args.length) return "Missing number after "+arg;
+				try {
+					maxLineLength = Integer.parseInt(args[i]);
+				} catch (NumberFormatException e) {
+					return "Not a number: "+args[i];
+				}
+				if (maxLineLength < 1) return "Maximum line length must be at least 1";
+			}
+			else if (arg.equals("--git-range")) {
+				if (++i == args.length) return "Missing range after "+arg;
+				int dots = args[i].indexOf("..");
+				if (dots <= 0 || dots + 2 == args[i].length() || args[i].charAt(dots + 2) == '.') {
+					return "Range must look like from..to: "+args[i];
+				}
+				fromRevision = args[i].substring(0, dots);
+				toRevision = args[i].substring(dots + 2);
+			}
+			else if (arg.equals("-h") || arg.equals("--help")) {
+				help = true;
+				return null;
+			}
+			else if (arg.startsWith("-")) {
+				return "Unknown option: "+arg;
+			}
+			else {
+				paths.add(new File(arg));
+			}
+		}
+
+		if (queryFile != null) {
+			if (!paths.isEmpty()) return "--query doesn't take paths";
+			if (longest < 0 && minLines < 0 && controlType == null) return "--query needs --longest, --min-lines or --control";
+			return null;
+		}
+		if (controlType != null) {
+			return "--control only works with --query";
+		}
+		if (paths.isEmpty()) {
+			return "No paths given";
+		}
+		if (indexFile != null && (paths.size() != 1 || !paths.get(0).isDirectory())) {
+			return "--index needs exactly one folder";
+		}
+		if (watch && (paths.size() != 1 || !paths.get(0).isDirectory())) {
+			return "--watch needs exactly one folder";
+		}
+		if (fromRevision != null && (paths.size() != 1 || !paths.get(0).isDirectory())) {
+			return "--git-range needs exactly one repository folder";
+		}
+		if (summaryK > 0 && (watch || workers > 0 || longest >= 0 || minLines >= 0)) {
+			return "--summary can't be used with --watch, --workers, --longest or --min-lines";
+		}
+		if (memoryBudget > 0 && (watch || summaryK > 0 || longest >= 0 || minLines >= 0)) {
+			return "--memory-budget can't be used with --watch, --summary, --longest or --min-lines";
+		}
+		if (workers > 0 && (watch || cacheFile != null || dedup || indexFile != null)) {
+			return "--workers can't be used with --watch, --cache, --dedup or --index";
+		}
+		if (fromRevision != null && (watch || workers > 0 || cacheFile != null || dedup || indexFile != null
+				|| summaryK > 0 || longest >= 0 || minLines >= 0 || memoryBudget > 0)) {
+			return "--git-range can't be used with --watch, --workers, --cache, --dedup, --index, --summary, --longest, --min-lines or --memory-budget";
+		}
+		if (dedup && watch) {
+			return "--dedup can't be used with --watch";
+		}
+		return null;
+	}
+
+	private WritableByteChannel openOutput() throws IOException {
+		if (output == null) {
+			return Channels.newChannel(System.out);
+		}
+		return FileChannel.open(output.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Closes the report file, or flushes standard output, which stays open.
+	 */
+	private void closeOutput(WritableByteChannel channel) {
+		if (output == null) {
+			System.out.flush();
+			return;
+		}
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				System.err.println("Error: "+e.toString());
+			}
+		}
+	}
+
+	private int analyzeAll(ReportWriter out) throws IOException {
+		int status = 0;
+		ResultCache cache = cacheFile == null ? null : ResultCache.load(cacheFile.toPath());
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			if (watch) {
+				watchFolder(out, paths.get(0), cache, pool);
+				return status;
+			}
+			for (File path : paths) {
+				LineCounter counter = new LineCounter();
+				String summary;
+				TreeMap<String, int[]> entries = null; //counts of each entry, for archives
+				StreamingSummary streaming = summaryK < 0 ? null : new StreamingSummary(summaryK);
+				SpillingAggregator spilling = memoryBudget < 0 ? null : new SpillingAggregator(memoryBudget); //only used for folders and archives
+				DirectoryAnalyzer deduplicated = null; //analyzer of a folder whose copies were skipped
+				if (path.isDirectory() && workers > 0) {
+					ShardCoordinator coordinator = new ShardCoordinator(workers);
+					coordinator.setMaxLineLength(maxLineLength);
+					counter = spilling == null ? coordinator.analyzeDirectory(path) : coordinator.analyzeDirectory(path, spilling::add);
+					summary = counter.getSummary();
+				}
+				else if (path.isDirectory()) {
+					DirectoryAnalyzer analyzer = new DirectoryAnalyzer(pool);
+					analyzer.setCache(cache);
+					analyzer.setMaxLineLength(maxLineLength);
+					analyzer.setDeduplicate(dedup);
+					if (streaming != null) {
+						analyzer.setListener(streaming);
+						analyzer.setKeepDetails(false);
+					}
+					MethodIndex.Builder index = indexFile == null ? null : new MethodIndex.Builder();
+					BiConsumer<String, LineCounter> onFile = index == null ? null : index::put;
+					if (spilling != null) {
+						analyzer.setKeepDetails(false);
+						onFile = onFile == null ? spilling : onFile.andThen(spilling);
+					}
+					counter = analyzer.analyzeDirectory(path, onFile);
+					printFailures(analyzer);
+					if (index != null) {
+						index.write(indexFile.toPath());
+					}
+					summary = counter.getSummary();
+					if (dedup) {
+						deduplicated = analyzer;
+					}
+				}
+				else if (path.isFile() && ArchiveAnalyzer.isArchive(path)) {
+					ArchiveAnalyzer analyzer = new ArchiveAnalyzer(pool);
+					analyzer.setMaxLineLength(maxLineLength);
+					if (streaming != null) {
+						analyzer.setListener(streaming);
+						analyzer.setKeepDetails(false);
+						counter = analyzer.analyzeArchive(path);
+					}
+					else {
+						TreeMap<String, int[]> entryCounts = new TreeMap<String, int[]>();
+						if (spilling != null) {
+							analyzer.setKeepDetails(false);
+						}
+						counter = analyzer.analyzeArchive(path, (name, entry) -> {
+							int[] counts = {entry.linecount, entry.nonCodeLines, entry.methods.size()};
+							synchronized (entryCounts) {
+								entryCounts.put(name, counts);
+							}
+							if (spilling != null) {
+								spilling.accept(name, entry);
+							}
+						});
+						entries = entryCounts;
+					}
+					summary = counter.getSummary();
+				}
+				else if (path.isFile() && cache != null) {
+					counter = cache.analyze(path.toPath(), maxLineLength, pool);
+					summary = counter.getSummary();
+					if (streaming != null) {
+						counter.replay(streaming);
+					}
+				}
+				else if (path.isFile() && path.length() >= ChunkedFileAnalyzer.MIN_SIZE) {
+					ChunkedFileAnalyzer analyzer = new ChunkedFileAnalyzer(pool);
+					analyzer.setMaxLineLength(maxLineLength);
+					counter = analyzer.analyzeFile(path);
+					summary = counter.getSummary();
+					if (streaming != null) {
+						counter.replay(streaming);
+					}
+				}
+				else if (path.isFile()) {
+					counter.setMaxLineLength(maxLineLength);
+					counter.setListener(streaming);
+					summary = counter.analyzeFile(path);
+				}
+				else {
+					System.err.println("File not found: "+path);
+					status = 1;
+					continue;
+				}
+
+				if (streaming != null) {
+					out.section(path.toString(), summary, counter);
+					streaming.writeReport(out);
+				}
+				else if (spilling != null && (path.isDirectory() || entries != null)) {
+					spilling.writeReport(out, path.toString(), summary, counter);
+				}
+				else {
+					writeReport(out, path, summary, counter);
+				}
+				if (entries != null) {
+					out.beginTable("entries", "Entries:", "Entry", "Lines", "Non-Code Lines", "Methods");
+					for (Map.Entry<String, int[]> entry : entries.entrySet()) {
+						out.row(entry.getKey(), entry.getValue());
+					}
+					out.endTable();
+				}
+				if (deduplicated != null) {
+					deduplicated.writeDuplicates(out);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		if (cache != null) {
+			cache.save();
+			System.err.println("Cache: "+cache.getHits()+" files reused, "+cache.getMisses()+" analyzed");
+		}
+		if (metrics) {
+			System.err.println(AnalysisMetrics.get());
+		}
+		out.flush();
+		return status;
+	}
+
+	/**
+	 * Prints the errors of the files an analyzer couldn't read, which are left out of the report.
+	 */
+	private static void printFailures(DirectoryAnalyzer analyzer) {
+		for (String failure : analyzer.takeFailures()) {
+			System.err.println(failure);
+		}
+	}
+
+	/**
+	 * Prints the report for a folder, then again after every change until the process is stopped.
+	 */
+	private void watchFolder(ReportWriter out, File folder, ResultCache cache, ForkJoinPool pool) throws IOException {
+		DirectoryAnalyzer analyzer = new DirectoryAnalyzer(pool);
+		analyzer.setCache(cache);
+		analyzer.setMaxLineLength(maxLineLength);
+		MethodIndex.Builder index = indexFile == null ? null : new MethodIndex.Builder();
+		try (DirectoryWatcher watcher = new DirectoryWatcher(folder, analyzer, pool)) {
+			watcher.setIndex(index);
+			LineCounter counter = watcher.start();
+			printFailures(analyzer);
+			writeReport(out, folder, counter.getSummary(), counter);
+			out.flush();
+			if (index != null) {
+				index.write(indexFile.toPath());
+			}
+			
+			watcher.watch(updated -> {
+				printFailures(analyzer);
+				try {
+					writeReport(out, folder, updated.getSummary(), updated);
+					out.flush();
+				} catch (IOException e) {
+					System.err.println("Could not write report: "+e.toString());
+				}
+				if (index != null) {
+					try {
+						index.write(indexFile.toPath());
+					} catch (IOException e) {
+						System.err.println("Could not write index: "+e.toString());
+					}
+				}
+				if (cache != null) {
+					try {
+						cache.save();
+					} catch (IOException e) {
+						System.err.println("Could not save cache: "+e.toString());
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Answers --longest, --min-lines and --control from the index file alone.
+	 */
+	private int queryIndex(ReportWriter out) throws IOException {
+		MethodIndex index = MethodIndex.open(queryFile.toPath());
+		if (longest >= 0) {
+			writeIndexedMethods(out, index, "longest", "Longest methods:", Math.min(longest, index.methodCount()));
+		}
+		if (minLines >= 0) {
+			writeIndexedMethods(out, index, "at_least", "Methods with at least "+minLines+" lines:", index.countAtLeast(minLines));
+		}
+		if (controlType != null) {
+			out.beginTable("most_used", "Files using "+controlType+" most:", "File", "Count");
+			int end = index.toControl(controlType);
+			for (int control = index.fromControl(controlType); control < end; control++) {
+				out.row(index.controlFile(control), index.controlCount(control));
+			}
+			out.endTable();
+		}
+		out.flush();
+		return 0;
+	}
+
+	/**
+	 * Writes the first count methods of an index, in the same table as LineCounter.writeMethodSpans.
+	 */
+	private static void writeIndexedMethods(ReportWriter out, MethodIndex index, String table, String title, int count) throws IOException {
+		out.beginTable(table, title, "Method", "Lines", "Start", "End", "Depth");
+		for (int method = 0; method < count; method++) {
+			out.row(index.methodName(method), index.codeLines(method), index.startLine(method), index.endLine(method), index.depth(method));
+		}
+		out.endTable();
+	}
+
+	private void writeReport(ReportWriter out, File path, String summary, LineCounter counter) throws IOException {
+		counter.writeReport(out, path.toString(), summary);
+		if (longest >= 0) {
+			counter.writeMethodSpans(out, "longest", "Longest methods:", counter.longestMethods(longest));
+		}
+		if (minLines >= 0) {
+			counter.writeMethodSpans(out, "at_least", "Methods with at least "+minLines+" lines:", counter.methodsOver(minLines));
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package linecounterapp;
+
+
+/**
+ * Receives what a LineCounter finds while it reads, before the whole file has been read.
+ * Every method does nothing by default, so a listener only needs the events it uses.
+ *
+ * Events are sent on the thread doing the analysis. A listener given to a DirectoryAnalyzer
+ * is called from several threads at once.
+ */
+public interface LineCounterListener {
+	/**
+	 * A method header was found.
+	 * @param name method name, as shown in the method table
+	 * @param startLine line of the header, counting from 1
+	 */
+	default void methodFound(String name, int startLine) {
+	}
+
+	/**
+	 * The body of a method ended. Methods declared without a body end on their header line with 0 lines.
+	 * @param codeLines number of code lines in the body, the same number the method table shows
+	 */
+	default void methodClosed(String name, int startLine, int endLine, int codeLines) {
+	}
+
+	/**
+	 * A control structure was found.
+	 * @param type the keyword or keywords before the parenthesis, like "if", "else if", "catch" or "synchronized",
+	 * or "else", as the control table shows them
+	 */
+	default void controlFound(String type) {
+	}
+
+	/**
+	 * A line has been read.
+	 * @param code true if the line counts towards the stripped line count, false if it is blank or a comment
+	 */
+	default void lineClassified(int line, boolean code) {
+	}
+
+	/**
+	 * Sent every so often while reading, and once at the end.
+	 * A DirectoryAnalyzer only sends it after each file, counting the bytes of the files done.
+	 */
+	default void progress(long bytesRead, long bytesTotal) {
+	}
+}
@@ -0,0 +1,424 @@
+package linecounterapp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+/**
+ * On-disk index of the methods and control structure counts of every file of a tree,
+ * for answering questions like "which methods have at least 80 lines" without reading the sources again.
+ *
+ * The index file is memory-mapped, and its records are stored sorted: methods by code lines, longest first,
+ * and control counts by type, then by count, most first. So the methods over a threshold are the first
+ * countAtLeast(threshold) records, the top n are the first n, and the files using a control structure most
+ * are the first records of its range. Each of these takes one binary search.
+ *
+ * Indexes are written by a Builder. An index file is only ever written whole, from the results of every file;
+ * only a builder kept alive, as in watch mode, is updated with just the files that changed.
+ */
+public class MethodIndex {
+	private static final int MAGIC = 0x4C434901; //"LCI" and the format version
+
+	//fields of a method record
+	private static final int CODE_LINES = 0;
+	private static final int FILE = 1;
+	private static final int START_LINE = 2;
+	private static final int END_LINE = 3;
+	private static final int DEPTH = 4;
+	private static final int NAME = 5;
+	private static final int METHOD_FIELDS = 6;
+
+	//fields of a control record
+	private static final int TYPE = 0;
+	private static final int COUNT = 1;
+	private static final int CONTROL_FILE = 2;
+	private static final int CONTROL_FIELDS = 3;
+
+	private final ByteBuffer buffer;
+	private final Strings files, names, types;
+	private final int methods, controls; //number of records
+	private final int methodStart, controlStart; //byte offsets of the first record
+
+	private MethodIndex(ByteBuffer buffer) {
+		this.buffer = buffer;
+		methods = buffer.getInt(4);
+		controls = buffer.getInt(8);
+		files = new Strings(buffer, 12);
+		names = new Strings(buffer, files.end);
+		types = new Strings(buffer, names.end);
+		methodStart = types.end;
+		controlStart = methodStart + methods * METHOD_FIELDS * 4;
+	}
+
+	/**
+	 * Maps an index file written by a Builder.
+	 * @throws IOException if the file can't be read or isn't an index
+	 */
+	public static MethodIndex open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < 12 || size > Integer.MAX_VALUE) {
+				throw new IOException("Not a method index: "+file);
+			}
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a method index: "+file);
+			}
+			return new MethodIndex(buffer);
+		}
+	}
+
+	/**
+	 * Number of methods, which are numbered from 0 in order of code lines, longest first.
+	 */
+	public int methodCount() {
+		return methods;
+	}
+
+	/**
+	 * Number of methods with at least minLines code lines. They are methods 0 to countAtLeast(minLines)-1.
+	 */
+	public int countAtLeast(int minLines) {
+		int low = 0, high = methods; //methods before low have at least minLines, from high on fewer
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (method(middle, CODE_LINES) >= minLines) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Name of a method prefixed by its file, as the method tables show it.
+	 */
+	public String methodName(int method) {
+		return methodFile(method)+": "+names.get(method(method, NAME));
+	}
+
+	public String methodFile(int method) {
+		return files.get(method(method, FILE));
+	}
+
+	public int codeLines(int method) {
+		return method(method, CODE_LINES);
+	}
+
+	public int startLine(int method) {
+		return method(method, START_LINE);
+	}
+
+	public int endLine(int method) {
+		return method(method, END_LINE);
+	}
+
+	public int depth(int method) {
+		return method(method, DEPTH);
+	}
+
+	/**
+	 * First control record of a type. Records from fromControl(type) to toControl(type)-1 are
+	 * the files using that type, most uses first.
+	 */
+	public int fromControl(String type) {
+		int id = types.find(type);
+		return id < 0 ? 0 : firstControlOf(id);
+	}
+
+	/**
+	 * End of the control records of a type, see fromControl.
+	 */
+	public int toControl(String type) {
+		int id = types.find(type);
+		return id < 0 ? 0 : firstControlOf(id + 1);
+	}
+
+	public String controlFile(int control) {
+		return files.get(control(control, CONTROL_FILE));
+	}
+
+	public int controlCount(int control) {
+		return control(control, COUNT);
+	}
+
+
+	private int method(int method, int field) {
+		return buffer.getInt(methodStart + (method * METHOD_FIELDS + field) * 4);
+	}
+
+	private int control(int control, int field) {
+		return buffer.getInt(controlStart + (control * CONTROL_FIELDS + field) * 4);
+	}
+
+	/**
+	 * Index of the first control record whose type id is at least type.
+	 */
+	private int firstControlOf(int type) {
+		int low = 0, high = controls;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (control(middle, TYPE) < type) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+
+	/**
+	 * A sorted table of strings in the index: their number, the offset of each one's UTF-8 bytes
+	 * and where the last one ends, then the bytes.
+	 */
+	private static class Strings {
+		private final ByteBuffer buffer;
+		private final int size;
+		private final int offsets; //position of the offsets
+		private final int bytes; //position of the bytes
+		final int end; //position after the table
+
+		Strings(ByteBuffer buffer, int position) {
+			this.buffer = buffer;
+			size = buffer.getInt(position);
+			offsets = position + 4;
+			bytes = offsets + (size + 1) * 4;
+			end = bytes + buffer.getInt(offsets + size * 4);
+		}
+
+		String get(int id) {
+			int start = buffer.getInt(offsets + id * 4);
+			byte[] text = new byte[buffer.getInt(offsets + id * 4 + 4) - start];
+			buffer.get(bytes + start, text);
+			return new String(text, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * @return the id of text, or -1 if it isn't in the table
+		 */
+		int find(String text) {
+			int low = 0, high = size - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int compared = get(middle).compareTo(text);
+				if (compared < 0) {
+					low = middle + 1;
+				}
+				else if (compared > 0) {
+					high = middle - 1;
+				}
+				else {
+					return middle;
+				}
+			}
+			return -1;
+		}
+
+		private static void write(DataOutputStream out, String[] sorted) throws IOException {
+			byte[][] encoded = new byte[sorted.length][];
+			int offset = 0;
+			out.writeInt(sorted.length);
+			for (int i = 0; i < sorted.length; i++) {
+				encoded[i] = sorted[i].getBytes(StandardCharsets.UTF_8);
+				out.writeInt(offset);
+				offset += encoded[i].length;
+			}
+			out.writeInt(offset);
+			for (byte[] text : encoded) {
+				out.write(text);
+			}
+		}
+	}
+
+	/**
+	 * The methods and control counts of one file, as the Builder keeps them until it writes the index.
+	 */
+	private static class FileRecords {
+		final String[] methodNames;
+		final int[] spans; //start line, end line, code lines and depth of each method
+		final String[] controlTypes;
+		final int[] controlCounts;
+
+		FileRecords(String[] methodNames, int[] spans, String[] controlTypes, int[] controlCounts) {
+			this.methodNames = methodNames;
+			this.spans = spans;
+			this.controlTypes = controlTypes;
+			this.controlCounts = controlCounts;
+		}
+	}
+
+	/**
+	 * Collects the results of files and writes them as an index. Adding a file again replaces its records,
+	 * so a builder kept alive can be kept up to date by putting the files that changed, removing
+	 * the deleted ones and writing it again, as DirectoryWatcher does. Safe to use from several threads.
+	 */
+	public static class Builder {
+		private final HashMap<String, FileRecords> files = new HashMap<String, FileRecords>();
+
+		public Builder() {
+		}
+
+		/**
+		 * Adds the methods and control structures of one file, replacing any it had before.
+		 * Only copies out of counter, so counter can be reused afterwards.
+		 * @param file label of the file, normally its path relative to the analyzed folder
+		 */
+		public void put(String file, LineCounter counter) {
+			MethodSpans methods = counter.methods;
+			String[] methodNames = new String[methods.size()];
+			int[] spans = new int[methods.size() * 4];
+			for (int span = 0; span < methodNames.length; span++) {
+				methodNames[span] = methods.name(span);
+				spans[span*4] = methods.get(span, MethodSpans.START_LINE);
+				spans[span*4 + 1] = methods.get(span, MethodSpans.END_LINE);
+				spans[span*4 + 2] = methods.get(span, MethodSpans.CODE_LINES);
+				spans[span*4 + 3] = methods.get(span, MethodSpans.DEPTH);
+			}
+
+			String[] controlTypes = counter.controlCounts.sortedNames();
+			int[] controlCounts = new int[controlTypes.length];
+			for (int i = 0; i < controlTypes.length; i++) {
+				controlCounts[i] = counter.controlCounts.get(controlTypes[i]);
+			}
+
+			FileRecords records = new FileRecords(methodNames, spans, controlTypes, controlCounts);
+			synchronized (files) {
+				files.put(file, records);
+			}
+		}
+
+		public void remove(String file) {
+			synchronized (files) {
+				files.remove(file);
+			}
+		}
+
+		/**
+		 * Removes every file.
+		 */
+		public void clear() {
+			synchronized (files) {
+				files.clear();
+			}
+		}
+
+		/**
+		 * Writes the index, replacing the file if it exists. The file is written under a temporary name first,
+		 * so an index open elsewhere is never seen half written.
+		 */
+		public void write(Path file) throws IOException {
+			TreeMap<String, FileRecords> sortedFiles;
+			synchronized (files) {
+				sortedFiles = new TreeMap<String, FileRecords>(files);
+			}
+
+			TreeSet<String> nameSet = new TreeSet<String>();
+			TreeSet<String> typeSet = new TreeSet<String>();
+			int methodCount = 0, controlCount = 0;
+			for (FileRecords records : sortedFiles.values()) {
+				nameSet.addAll(Arrays.asList(records.methodNames));
+				typeSet.addAll(Arrays.asList(records.controlTypes));
+				methodCount += records.methodNames.length;
+				controlCount += records.controlTypes.length;
+			}
+			String[] fileNames = sortedFiles.keySet().toArray(new String[0]);
+			String[] methodNames = nameSet.toArray(new String[0]);
+			String[] typeNames = typeSet.toArray(new String[0]);
+
+			int[] methodRecords = new int[methodCount * METHOD_FIELDS];
+			int[] controlRecords = new int[controlCount * CONTROL_FIELDS];
+			int method = 0, control = 0;
+			for (int fileId = 0; fileId < fileNames.length; fileId++) {
+				FileRecords records = sortedFiles.get(fileNames[fileId]);
+				for (int i = 0; i < records.methodNames.length; i++, method++) {
+					int base = method * METHOD_FIELDS;
+					methodRecords[base + CODE_LINES] = records.spans[i*4 + 2];
+					methodRecords[base + FILE] = fileId;
+					methodRecords[base + START_LINE] = records.spans[i*4];
+					methodRecords[base + END_LINE] = records.spans[i*4 + 1];
+					methodRecords[base + DEPTH] = records.spans[i*4 + 3];
+					methodRecords[base + NAME] = Arrays.binarySearch(methodNames, records.methodNames[i]);
+				}
+				for (int i = 0; i < records.controlTypes.length; i++, control++) {
+					int base = control * CONTROL_FIELDS;
+					controlRecords[base + TYPE] = Arrays.binarySearch(typeNames, records.controlTypes[i]);
+					controlRecords[base + COUNT] = records.controlCounts[i];
+					controlRecords[base + CONTROL_FILE] = fileId;
+				}
+			}
+
+			//longest first, then by file and line
+			int[] methodOrder = order(methodCount, (a, b) -> {
+				int compared = Integer.compare(methodRecords[b * METHOD_FIELDS + CODE_LINES], methodRecords[a * METHOD_FIELDS + CODE_LINES]);
+				if (compared == 0) compared = Integer.compare(methodRecords[a * METHOD_FIELDS + FILE], methodRecords[b * METHOD_FIELDS + FILE]);
+				if (compared == 0) compared = Integer.compare(methodRecords[a * METHOD_FIELDS + START_LINE], methodRecords[b * METHOD_FIELDS + START_LINE]);
+				return compared;
+			});
+			//by type, then most used first, then by file
+			int[] controlOrder = order(controlCount, (a, b) -> {
+				int compared = Integer.compare(controlRecords[a * CONTROL_FIELDS + TYPE], controlRecords[b * CONTROL_FIELDS + TYPE]);
+				if (compared == 0) compared = Integer.compare(controlRecords[b * CONTROL_FIELDS + COUNT], controlRecords[a * CONTROL_FIELDS + COUNT]);
+				if (compared == 0) compared = Integer.compare(controlRecords[a * CONTROL_FIELDS + CONTROL_FILE], controlRecords[b * CONTROL_FIELDS + CONTROL_FILE]);
+				return compared;
+			});
+
+			Path temp = file.resolveSibling(file.getFileName()+".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(methodCount);
+				out.writeInt(controlCount);
+				Strings.write(out, fileNames);
+				Strings.write(out, methodNames);
+				Strings.write(out, typeNames);
+				for (int record : methodOrder) {
+					for (int field = 0; field < METHOD_FIELDS; field++) {
+						out.writeInt(methodRecords[record * METHOD_FIELDS + field]);
+					}
+				}
+				for (int record : controlOrder) {
+					for (int field = 0; field < CONTROL_FIELDS; field++) {
+						out.writeInt(controlRecords[record * CONTROL_FIELDS + field]);
+					}
+				}
+			}
+
+			try {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+
+		private static int[] order(int size, Comparator<Integer> comparator) {
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, comparator);
+
+			int[] sorted = new int[size];
+			for (int i = 0; i < size; i++) {
+				sorted[i] = order[i];
+			}
+			return sorted;
+		}
+	}
+}
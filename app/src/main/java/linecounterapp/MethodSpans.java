@@ -0,0 +1,422 @@
+package linecounterapp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * The methods found in source, each stored as a span of ints in one flat array:
+ * first and last line, number of code lines, deepest brace nesting, and ids of its name and source.
+ * Methods with the same name, like overloads or methods of different classes, each keep their own span.
+ *
+ * The source is the label given with setSource, normally the file the methods came from.
+ * It is -1 for methods that haven't been given one.
+ *
+ * Once spans are removed by source, the spans of each source are also kept as a linked list, so removing a file's
+ * methods from a large total only touches that file's spans. Removing a span moves the last one into its place,
+ * which changes the order of the spans, but not that of sortedByName.
+ */
+class MethodSpans {
+	static final int START_LINE = 0;
+	static final int END_LINE = 1;
+	static final int CODE_LINES = 2;
+	static final int DEPTH = 3; //deepest nesting of braces inside the method, 1 for a body without blocks
+	static final int NAME = 4;
+	static final int SOURCE = 5;
+	private static final int FIELDS = 6;
+
+	final CountTable names = new CountTable(); //used to intern names, the counts aren't used
+	final CountTable sources = new CountTable();
+	private int[] spans = new int[FIELDS * 16];
+	private int size;
+	//spans of each source as doubly linked lists, null until removeSources is first called
+	private int[] heads; //first span by source id, -1 if it has none
+	private int[] next, previous; //by span, -1 at the ends
+
+	/**
+	 * Starts a span for a method, with no code lines until close is called.
+	 * @param name id of the method's name in names
+	 * @param startLine line of the method header
+	 * @return index of the new span
+	 */
+	int add(int name, int startLine) {
+		if ((size + 1) * FIELDS > spans.length) {
+			spans = Arrays.copyOf(spans, spans.length * 2);
+		}
+		int span = size++;
+		int base = span * FIELDS;
+		spans[base + START_LINE] = startLine;
+		spans[base + END_LINE] = startLine;
+		spans[base + CODE_LINES] = 0;
+		spans[base + DEPTH] = 0;
+		spans[base + NAME] = name;
+		spans[base + SOURCE] = -1;
+		return span;
+	}
+
+	/**
+	 * Records where a method ended.
+	 */
+	void close(int span, int endLine, int codeLines, int depth) {
+		int base = span * FIELDS;
+		spans[base + END_LINE] = endLine;
+		spans[base + CODE_LINES] = codeLines;
+		spans[base + DEPTH] = depth;
+	}
+
+	int get(int span, int field) {
+		return spans[span * FIELDS + field];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every span and name, keeping the arrays for reuse.
+	 */
+	void clear() {
+		size = 0;
+		names.clear();
+		sources.clear();
+		heads = null;
+		next = previous = null;
+	}
+
+	String name(int span) {
+		return names.name(get(span, NAME));
+	}
+
+	/**
+	 * Name of the method, prefixed by its source if it has one.
+	 */
+	String displayName(int span) {
+		int source = get(span, SOURCE);
+		return source < 0 ? name(span) : sources.name(source)+": "+name(span);
+	}
+
+	/**
+	 * Gives every span the same source label.
+	 */
+	void setSource(String label) {
+		setSource(label, 0);
+	}
+
+	/**
+	 * Gives the spans from the given one on the same source label.
+	 */
+	void setSource(String label, int from) {
+		int source = sources.intern(label);
+		for (int span = from; span < size; span++) {
+			unlink(span);
+			spans[span * FIELDS + SOURCE] = source;
+			link(span);
+		}
+	}
+
+	/**
+	 * Appends copies of all spans of other.
+	 */
+	void addAll(MethodSpans other) {
+		int[] nameIds = new int[other.names.ids()];
+		int[] sourceIds = new int[other.sources.ids()];
+		Arrays.fill(nameIds, -1);
+		Arrays.fill(sourceIds, -1);
+
+		for (int span = 0; span < other.size; span++) {
+			int name = other.get(span, NAME);
+			if (nameIds[name] < 0) {
+				nameIds[name] = names.intern(other.names.name(name));
+			}
+			int source = other.get(span, SOURCE);
+			if (source >= 0 && sourceIds[source] < 0) {
+				sourceIds[source] = sources.intern(other.sources.name(source));
+			}
+
+			int added = add(nameIds[name], other.get(span, START_LINE));
+			close(added, other.get(span, END_LINE), other.get(span, CODE_LINES), other.get(span, DEPTH));
+			spans[added * FIELDS + SOURCE] = source < 0 ? -1 : sourceIds[source];
+			link(added);
+		}
+	}
+
+	/**
+	 * Removes every span that came from one of the sources of other's spans, and the names of those sources.
+	 * Takes time in proportion to the spans removed, apart from the first call, which indexes the spans by source.
+	 */
+	void removeSources(MethodSpans other) {
+		if (heads == null) {
+			index();
+		}
+		for (int span = 0; span < other.size; span++) {
+			int source = other.get(span, SOURCE);
+			if (source < 0) {
+				continue;
+			}
+			String label = other.sources.name(source);
+			int own = sources.find(label);
+			if (own < 0) {
+				continue;
+			}
+			while (own < heads.length && heads[own] >= 0) {
+				remove(heads[own]);
+			}
+			sources.remove(label);
+		}
+
+		//removed names keep their ids, so once they are most of the table it is built again from the names in use
+		if (sources.ids() > 2 * sources.size() + 16) {
+			compactSources();
+		}
+	}
+
+	/**
+	 * Removes a span by moving the last span into its place.
+	 */
+	private void remove(int span) {
+		unlink(span);
+		int last = --size;
+		if (span == last) {
+			return;
+		}
+		System.arraycopy(spans, last * FIELDS, spans, span * FIELDS, FIELDS);
+		if (heads != null && get(span, SOURCE) >= 0) {
+			int before = previous[last], after = next[last];
+			previous[span] = before;
+			next[span] = after;
+			if (before >= 0) {
+				next[before] = span;
+			}
+			else {
+				heads[get(span, SOURCE)] = span;
+			}
+			if (after >= 0) {
+				previous[after] = span;
+			}
+		}
+	}
+
+	/**
+	 * Starts keeping the spans of each source in a list.
+	 */
+	private void index() {
+		heads = new int[Math.max(16, sources.ids())];
+		Arrays.fill(heads, -1);
+		next = new int[spans.length / FIELDS];
+		previous = new int[next.length];
+		for (int span = 0; span < size; span++) {
+			link(span);
+		}
+	}
+
+	/**
+	 * Adds a span to the front of its source's list, if the lists are kept.
+	 */
+	private void link(int span) {
+		int source = get(span, SOURCE);
+		if (heads == null || source < 0) {
+			return;
+		}
+		if (source >= heads.length) {
+			int length = heads.length;
+			heads = Arrays.copyOf(heads, Math.max(source + 1, length * 2));
+			Arrays.fill(heads, length, heads.length, -1);
+		}
+		if (span >= next.length) {
+			next = Arrays.copyOf(next, spans.length / FIELDS);
+			previous = Arrays.copyOf(previous, next.length);
+		}
+		int first = heads[source];
+		previous[span] = -1;
+		next[span] = first;
+		if (first >= 0) {
+			previous[first] = span;
+		}
+		heads[source] = span;
+	}
+
+	/**
+	 * Takes a span out of its source's list, if the lists are kept.
+	 */
+	private void unlink(int span) {
+		int source = get(span, SOURCE);
+		if (heads == null || source < 0) {
+			return;
+		}
+		int before = previous[span], after = next[span];
+		if (before >= 0) {
+			next[before] = after;
+		}
+		else {
+			heads[source] = after;
+		}
+		if (after >= 0) {
+			previous[after] = before;
+		}
+	}
+
+	/**
+	 * Interns the sources still in use again from id 0, dropping the names of removed ones.
+	 */
+	private void compactSources() {
+		String[] labels = new String[sources.ids()];
+		for (int id = 0; id < labels.length; id++) {
+			labels[id] = sources.containsKey(sources.name(id)) ? sources.name(id) : null;
+		}
+		sources.clear();
+		int[] ids = new int[labels.length];
+		for (int id = 0; id < labels.length; id++) {
+			ids[id] = labels[id] == null ? -1 : sources.intern(labels[id]);
+		}
+		for (int span = 0; span < size; span++) {
+			int source = get(span, SOURCE);
+			if (source >= 0) {
+				spans[span * FIELDS + SOURCE] = ids[source];
+			}
+		}
+		index();
+	}
+
+	/**
+	 * Spans ordered by display name, and by start line for equal names.
+	 */
+	int[] sortedByName() {
+		Integer[] order = new Integer[size];
+		for (int span = 0; span < size; span++) {
+			order[span] = span;
+		}
+		String[] displayNames = new String[size];
+		for (int span = 0; span < size; span++) {
+			displayNames[span] = displayName(span);
+		}
+		Arrays.sort(order, (a, b) -> {
+			int compared = displayNames[a].compareTo(displayNames[b]);
+			return compared != 0 ? compared : Integer.compare(get(a, START_LINE), get(b, START_LINE));
+		});
+
+		int[] sorted = new int[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = order[i];
+		}
+		return sorted;
+	}
+
+	/**
+	 * The n spans with the most code lines, longest first.
+	 * Keeps a min-heap of the n longest seen so far, so it takes O(size log n).
+	 */
+	int[] longest(int n) {
+		n = Math.min(n, size);
+		long[] heap = new long[n]; //code lines in the high half, span in the low half
+		int heapSize = 0;
+		for (int span = 0; span < size; span++) {
+			long key = byLength(span);
+			if (heapSize < n) {
+				heap[heapSize++] = key;
+				siftUp(heap, heapSize - 1);
+			}
+			else if (n > 0 && key > heap[0]) {
+				heap[0] = key;
+				siftDown(heap, heapSize);
+			}
+		}
+		return spansLongestFirst(heap, heapSize);
+	}
+
+	/**
+	 * The spans with at least minLines code lines, longest first.
+	 */
+	int[] atLeast(int minLines) {
+		long[] keys = new long[size];
+		int count = 0;
+		for (int span = 0; span < size; span++) {
+			if (get(span, CODE_LINES) >= minLines) {
+				keys[count++] = byLength(span);
+			}
+		}
+		return spansLongestFirst(keys, count);
+	}
+
+	void writeTo(DataOutput out) throws IOException {
+		writeNames(out, names);
+		writeNames(out, sources);
+		out.writeInt(size);
+		for (int i = 0; i < size * FIELDS; i++) {
+			out.writeInt(spans[i]);
+		}
+	}
+
+	void readFrom(DataInput in) throws IOException {
+		heads = null;
+		next = previous = null;
+		readNames(in, names);
+		readNames(in, sources);
+		size = in.readInt();
+		spans = new int[Math.max(size, 16) * FIELDS];
+		for (int i = 0; i < size * FIELDS; i++) {
+			spans[i] = in.readInt();
+		}
+	}
+
+
+	private long byLength(int span) {
+		return ((long)get(span, CODE_LINES) << 32) | span;
+	}
+
+	private static int[] spansLongestFirst(long[] keys, int count) {
+		long[] sorted = Arrays.copyOf(keys, count);
+		Arrays.sort(sorted);
+		int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = (int)sorted[count - 1 - i];
+		}
+		return result;
+	}
+
+	private static void siftUp(long[] heap, int i) {
+		while (i > 0 && heap[(i - 1) / 2] > heap[i]) {
+			swap(heap, i, (i - 1) / 2);
+			i = (i - 1) / 2;
+		}
+	}
+
+	private static void siftDown(long[] heap, int size) {
+		int i = 0;
+		while (true) {
+			int smallest = i;
+			int left = 2*i + 1, right = left + 1;
+			if (left < size && heap[left] < heap[smallest]) smallest = left;
+			if (right < size && heap[right] < heap[smallest]) smallest = right;
+			if (smallest == i) {
+				return;
+			}
+			swap(heap, i, smallest);
+			i = smallest;
+		}
+	}
+
+	private static void swap(long[] heap, int a, int b) {
+		long temp = heap[a];
+		heap[a] = heap[b];
+		heap[b] = temp;
+	}
+
+	/**
+	 * Writes every id's name, including removed ones, so the ids stay the same when read back.
+	 */
+	private static void writeNames(DataOutput out, CountTable table) throws IOException {
+		out.writeInt(table.ids());
+		for (int id = 0; id < table.ids(); id++) {
+			out.writeUTF(table.name(id));
+		}
+	}
+
+	private static void readNames(DataInput in, CountTable table) throws IOException {
+		int ids = in.readInt();
+		for (int id = 0; id < ids; id++) {
+			table.intern(in.readUTF());
+		}
+	}
+}
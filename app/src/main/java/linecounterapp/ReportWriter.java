@@ -0,0 +1,57 @@
+package linecounterapp;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * Writes a report row by row as it is produced, so no report is ever held in memory whole.
+ * A report is a series of sections, one per analyzed path, each with its totals and some tables.
+ */
+interface ReportWriter {
+	/** Names accepted by forFormat. */
+	String FORMATS = "text, csv, jsonl, binary";
+
+	/**
+	 * Starts the section of one path, with its totals.
+	 * @param summary text of the totals, or of why the path couldn't be analyzed, as LineCounter gives it
+	 */
+	void section(String path, String summary, LineCounter counter) throws IOException;
+
+	/**
+	 * Starts a table in the current section.
+	 * @param table short name of the table, like "methods"
+	 * @param title line shown above the table in text reports, or null for none
+	 * @param columns titles of the name column and the value columns
+	 */
+	void beginTable(String table, String title, String... columns) throws IOException;
+
+	void row(String name, int... values) throws IOException;
+
+	void endTable() throws IOException;
+
+	/**
+	 * Writes out everything buffered so far.
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * @param format one of FORMATS
+	 * @param showPaths whether text reports name each section's path
+	 * @return a writer for the format, or null if there is no such format
+	 */
+	static ReportWriter forFormat(String format, WritableByteChannel channel, boolean showPaths) {
+		switch (format) {
+		case "text":
+			return new TextReportWriter(channel, showPaths);
+		case "csv":
+			return new CsvReportWriter(channel);
+		case "jsonl":
+			return new JsonLinesReportWriter(channel);
+		case "binary":
+			return new BinaryReportWriter(channel);
+		default:
+			return null;
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package linecounterapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Keeps the LineCounter result of each file between runs, in a compact binary file.
+ * A file's result is reused if its size and modification time are unchanged,
+ * or failing that, if its size and content hash are. It also has to have been analyzed with the same maximum line length.
+ * Files over 2GB aren't hashed, they only match by size and modification time.
+ *
+ * Every save rewrites the cache file with only the entries worth keeping. Entries for files that
+ * no longer exist, or that weren't looked up in the last MAX_IDLE_RUNS runs, are dropped,
+ * so deleted and renamed files don't make the cache grow forever.
+ * Safe to use from several threads.
+ */
+public class ResultCache {
+	private static final int MAGIC = 0x4C434303; //"LCC" and the format version
+	static final int MAX_IDLE_RUNS = 5;
+
+	private final Path file;
+	private final int run; //incremented on every load, used to age entries
+	private final ConcurrentHashMap<String, Entry> entries;
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	private ResultCache(Path file, int run, ConcurrentHashMap<String, Entry> entries) {
+		this.file = file;
+		this.run = run;
+		this.entries = entries;
+	}
+
+	/**
+	 * Loads a cache file. A missing or unreadable file gives an empty cache that will be written on save.
+	 */
+	public static ResultCache load(Path file) {
+		ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				return new ResultCache(file, 0, entries);
+			}
+			int run = in.readInt() + 1;
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				String path = in.readUTF();
+				long length = in.readLong();
+				long modified = in.readLong();
+				long hash = in.readLong();
+				int maxLineLength = in.readInt();
+				int lastUsed = in.readInt();
+				byte[] result = new byte[in.readInt()];
+				in.readFully(result);
+				entries.put(path, new Entry(length, modified, hash, maxLineLength, lastUsed, result));
+			}
+			return new ResultCache(file, run, entries);
+		} catch (IOException e) {
+			return new ResultCache(file, 0, new ConcurrentHashMap<String, Entry>());
+		}
+	}
+
+	/**
+	 * Returns the result for a file, from the cache if the file is unchanged, otherwise by analyzing it.
+	 * @throws IOException if the file can't be read
+	 */
+	public LineCounter analyze(Path source) throws IOException {
+		return analyze(source, LineCounter.DEFAULT_MAX_LINE_LENGTH);
+	}
+
+	/**
+	 * Same as analyze(source), with a maximum line length as LineCounter.setMaxLineLength takes.
+	 */
+	public LineCounter analyze(Path source, int maxLineLength) throws IOException {
+		return analyze(source, maxLineLength, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Same as analyze(source, maxLineLength). Files of at least ChunkedFileAnalyzer.MIN_SIZE are mapped
+	 * rather than read onto the heap, and split between the threads of pool.
+	 */
+	public LineCounter analyze(Path source, int maxLineLength, ForkJoinPool pool) throws IOException {
+		String key = source.toAbsolutePath().normalize().toString();
+		long length = Files.size(source);
+		long modified = Files.getLastModifiedTime(source).toMillis();
+
+		Entry entry = entries.get(key);
+		if (entry != null && entry.maxLineLength != maxLineLength) {
+			entry = null;
+		}
+		if (entry != null && entry.length == length && entry.modified == modified) {
+			entry.lastUsed = run;
+			hits.incrementAndGet();
+			return entry.result();
+		}
+
+		ChunkedFileAnalyzer chunked = new ChunkedFileAnalyzer(pool);
+		chunked.setMaxLineLength(maxLineLength);
+		if (length > Integer.MAX_VALUE) {
+			//too big for one buffer to hash, mapped in windows instead
+			LineCounter counter = chunked.analyzeFile(source.toFile());
+			entries.put(key, new Entry(length, modified, 0, maxLineLength, run, serialize(counter)));
+			misses.incrementAndGet();
+			return counter;
+		}
+
+		ByteBuffer bytes = read(source);
+		long hash = ContentHash.hash(bytes);
+		if (entry != null && entry.length == length && entry.hash == hash) {
+			entries.put(key, new Entry(length, modified, hash, maxLineLength, run, entry.result));
+			hits.incrementAndGet();
+			return entry.result();
+		}
+
+		LineCounter counter;
+		if (bytes.remaining() >= ChunkedFileAnalyzer.MIN_SIZE) {
+			counter = chunked.analyzeBytes(bytes);
+		}
+		else {
+			counter = new LineCounter();
+			counter.setMaxLineLength(maxLineLength);
+			counter.analyzeBytes(bytes);
+		}
+		entries.put(key, new Entry(length, modified, hash, maxLineLength, run, serialize(counter)));
+		misses.incrementAndGet();
+		return counter;
+	}
+
+	/**
+	 * Rewrites the cache file, dropping stale entries.
+	 * Files analyzed while it saves are kept in memory, but may only be written by the next save.
+	 */
+	public void save() throws IOException {
+		Path temp = file.resolveSibling(file.getFileName()+".tmp");
+		//files analyzed while saving can add entries, so the count written has to be that of a snapshot
+		List<Map.Entry<String, Entry>> kept = new ArrayList<Map.Entry<String, Entry>>();
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			if (isWorthKeeping(entry.getKey(), entry.getValue())) {
+				kept.add(Map.entry(entry.getKey(), entry.getValue()));
+			}
+			else {
+				entries.remove(entry.getKey(), entry.getValue()); //unless it was just replaced
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(run);
+			out.writeInt(kept.size());
+			for (Map.Entry<String, Entry> entry : kept) {
+				Entry value = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(value.length);
+				out.writeLong(value.modified);
+				out.writeLong(value.hash);
+				out.writeInt(value.maxLineLength);
+				out.writeInt(value.lastUsed);
+				out.writeInt(value.result.length);
+				out.write(value.result);
+			}
+		}
+
+		try {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Number of files whose result came from the cache.
+	 */
+	public int getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Number of files that had to be analyzed.
+	 */
+	public int getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Number of files currently in the cache.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Reads a file of at most 2GB, memory mapping it if it is big enough to be split.
+	 */
+	private static ByteBuffer read(Path source) throws IOException {
+		try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File too large: "+source); //grew since its size was checked
+			}
+			if (size >= ChunkedFileAnalyzer.MIN_SIZE) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+		}
+		return ByteBuffer.wrap(Files.readAllBytes(source));
+	}
+
+	private boolean isWorthKeeping(String path, Entry entry) {
+		if (entry.lastUsed == run) {
+			return true;
+		}
+		return run - entry.lastUsed < MAX_IDLE_RUNS && Files.exists(Paths.get(path));
+	}
+
+	private static byte[] serialize(LineCounter counter) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			counter.writeTo(out);
+		}
+		return bytes.toByteArray();
+	}
+
+
+	private static class Entry {
+		final long length;
+		final long modified;
+		final long hash;
+		final int maxLineLength;
+		volatile int lastUsed;
+		final byte[] result; //serialized LineCounter, so every lookup gets its own copy
+
+		Entry(long length, long modified, long hash, int maxLineLength, int lastUsed, byte[] result) {
+			this.length = length;
+			this.modified = modified;
+			this.hash = hash;
+			this.maxLineLength = maxLineLength;
+			this.lastUsed = lastUsed;
+			this.result = result;
+		}
+
+		LineCounter result() throws IOException {
+			return LineCounter.readFrom(new DataInputStream(new ByteArrayInputStream(result)));
+		}
+	}
+}
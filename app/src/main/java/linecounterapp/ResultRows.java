@@ -0,0 +1,183 @@
+package linecounterapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntBinaryOperator;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+
+
+/**
+ * Rows of a two column result table, stored by column: names in one array and counts in an int array.
+ * The table's items are row indices, and cell values are only made for the cells on screen,
+ * so a result with hundreds of thousands of methods doesn't need an object with properties per row.
+ *
+ * Sorting compares row indices on a background thread and puts the new order in place when it is done.
+ * Everything else is only used on the FX thread.
+ */
+class ResultRows {
+	private static final ExecutorService SORTER = Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task, "table sort");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final ObservableList<Integer> items = FXCollections.observableArrayList(); //row indices in display order
+	private String[] names = new String[64];
+	private int[] counts = new int[64];
+	private int[] positions = new int[64]; //index of each shown row in items
+	private int size;
+	private int shown; //rows[0, shown) are in items
+	private int sorts; //incremented for every sort, so an older one finishing late is ignored
+
+	/**
+	 * Adds a row. It appears in the table at the next showNew.
+	 * @return index of the row
+	 */
+	int add(String name, int count) {
+		if (size == names.length) {
+			names = Arrays.copyOf(names, size * 2);
+			counts = Arrays.copyOf(counts, size * 2);
+			positions = Arrays.copyOf(positions, size * 2);
+		}
+		names[size] = name;
+		counts[size] = count;
+		return size++;
+	}
+
+	/**
+	 * Appends the rows added since the last call to the table, in one change.
+	 */
+	void showNew() {
+		if (shown == size) {
+			return;
+		}
+		ArrayList<Integer> added = new ArrayList<Integer>(size - shown);
+		for (int row = shown; row < size; row++) {
+			positions[row] = items.size() + added.size();
+			added.add(row);
+		}
+		shown = size;
+		items.addAll(added);
+	}
+
+	/**
+	 * Changes a row's count and redraws it, if it is shown.
+	 */
+	void setCount(int row, int count) {
+		counts[row] = count;
+		if (row < shown) {
+			items.set(positions[row], row);
+		}
+	}
+
+	String name(int row) {
+		return names[row];
+	}
+
+	int count(int row) {
+		return counts[row];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Shows the rows in a table, and makes the table sort through sort.
+	 * The first column of the table shows names and the second counts.
+	 */
+	@SuppressWarnings("unchecked")
+	void show(TableView<Integer> table) {
+		TableColumn<Integer, String> nameColumn = (TableColumn<Integer, String>)table.getColumns().get(0);
+		TableColumn<Integer, Integer> countColumn = (TableColumn<Integer, Integer>)table.getColumns().get(1);
+		nameColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<String>(names[cell.getValue()]));
+		countColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<Integer>(counts[cell.getValue()]));
+
+		table.setSortPolicy(sorted -> {
+			if (sorted.getSortOrder().isEmpty()) {
+				return true; //keep the current order
+			}
+			TableColumn<Integer, ?> column = sorted.getSortOrder().get(0);
+			sort(column == nameColumn, column.getSortType() == TableColumn.SortType.ASCENDING);
+			return true;
+		});
+		table.setItems(items);
+	}
+
+	/**
+	 * Sorts the rows on a background thread. Rows added in the meantime are put after the sorted ones.
+	 * @param byName true to sort by name, false by count
+	 */
+	void sort(boolean byName, boolean ascending) {
+		int sort = ++sorts;
+		int count = shown;
+		String[] sortNames = names; //add only writes past count, and growing replaces the arrays, so these stay valid
+		int[] sortCounts = counts; //setCount may still change a count, which only shows in this sort's order
+
+		SORTER.execute(() -> {
+			int[] order = new int[count];
+			for (int row = 0; row < count; row++) {
+				order[row] = row;
+			}
+			IntBinaryOperator compare = byName
+					? (a, b) -> sortNames[a].compareTo(sortNames[b])
+					: (a, b) -> Integer.compare(sortCounts[a], sortCounts[b]);
+			sortIndices(order, ascending ? compare : (a, b) -> compare.applyAsInt(b, a));
+
+			ArrayList<Integer> sorted = new ArrayList<Integer>(count);
+			int[] sortedPositions = new int[count];
+			for (int row : order) {
+				sortedPositions[row] = sorted.size();
+				sorted.add(row);
+			}
+			Platform.runLater(() -> {
+				if (sort != sorts) {
+					return;
+				}
+				System.arraycopy(sortedPositions, 0, positions, 0, count);
+				for (int row = count; row < shown; row++) {
+					positions[row] = sorted.size();
+					sorted.add(row);
+				}
+				items.setAll(sorted);
+			});
+		});
+	}
+
+	/**
+	 * Stable merge sort of row indices, so rows that compare equal keep their order.
+	 */
+	static void sortIndices(int[] rows, IntBinaryOperator compare) {
+		int[] buffer = new int[rows.length];
+		int[] from = rows, to = buffer;
+		for (int width = 1; width < rows.length; width *= 2) {
+			for (int start = 0; start < rows.length; start += 2 * width) {
+				int middle = Math.min(start + width, rows.length);
+				int end = Math.min(start + 2 * width, rows.length);
+				int left = start, right = middle;
+				for (int i = start; i < end; i++) {
+					if (left < middle && (right == end || compare.applyAsInt(from[left], from[right]) <= 0)) {
+						to[i] = from[left++];
+					}
+					else {
+						to[i] = from[right++];
+					}
+				}
+			}
+			int[] swap = from;
+			from = to;
+			to = swap;
+		}
+		if (from != rows) {
+			System.arraycopy(from, 0, rows, 0, rows.length);
+		}
+	}
+}
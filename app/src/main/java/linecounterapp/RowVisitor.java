@@ -0,0 +1,11 @@
+package linecounterapp;
+
+
+/**
+ * Receives the rows of a result table one at a time, see LineCounter.visitMethods.
+ * @param <E> exception the visitor may throw, RuntimeException for none
+ */
+@FunctionalInterface
+interface RowVisitor<E extends Exception> {
+	void row(String name, int count) throws E;
+}
@@ -0,0 +1,188 @@
+package linecounterapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+
+/**
+ * Analyzes a directory tree in several worker JVMs on this machine, so the analysis itself is spread
+ * over several heaps: each worker only holds the files of the frame it is working on.
+ * The sorted file list is cut into one contiguous shard per worker. Each worker is a ShardWorker process
+ * that gets its shard on standard input and streams its results back as they are done.
+ * A shard whose worker fails is run again in a new process, up to the number of retries.
+ *
+ * analyzeDirectory(directory) merges every shard's methods into the result, so this process still ends up
+ * holding all of them. To bound that too, give analyzeDirectory a consumer like SpillingAggregator.add,
+ * which gets the results as they arrive instead.
+ */
+public class ShardCoordinator {
+	private final int workers;
+	private int retries = 2;
+	private int maxLineLength = LineCounter.DEFAULT_MAX_LINE_LENGTH;
+	private List<String> workerOptions = List.of();
+	String workerClass = ShardWorker.class.getName(); //replaced by tests
+
+	/**
+	 * @param workers number of worker processes, and of shards
+	 */
+	public ShardCoordinator(int workers) {
+		this.workers = workers;
+	}
+
+	/**
+	 * Sets how often a failed shard is started again before the analysis fails.
+	 */
+	public void setRetries(int retries) {
+		this.retries = retries;
+	}
+
+	/**
+	 * Sets the maximum line length every file is analyzed with, see LineCounter.setMaxLineLength.
+	 */
+	public void setMaxLineLength(int bytes) {
+		this.maxLineLength = bytes;
+	}
+
+	/**
+	 * Sets extra options for the worker JVMs, like -Xmx512m.
+	 */
+	public void setWorkerOptions(List<String> options) {
+		this.workerOptions = List.copyOf(options);
+	}
+
+	/**
+	 * Walks a directory tree and analyzes all .java files in it across the workers.
+	 * Method names in the result are prefixed with the file's path relative to the directory.
+	 * Shards are merged in order, so the result is the same as DirectoryAnalyzer's.
+	 * @return Merged counts of every file in the tree
+	 * @throws IOException if the tree can't be walked, or a shard failed every attempt
+	 */
+	public LineCounter analyzeDirectory(File directory) throws IOException {
+		return analyzeDirectory(directory, null);
+	}
+
+	/**
+	 * Same as analyzeDirectory(directory), but hands the methods and control structures to onResults as the workers
+	 * send them, and only keeps the line and file counts in the result.
+	 * A batch a failed worker already delivered isn't delivered again by the retry.
+	 * @param onResults called with the counts of a batch of files, their methods prefixed with their paths,
+	 * from one thread per shard at once, or null to merge everything into the result
+	 */
+	public LineCounter analyzeDirectory(File directory, Consumer<LineCounter> onResults) throws IOException {
+		Path root = directory.toPath().toAbsolutePath();
+		List<Path> files = DirectoryAnalyzer.findJavaFiles(root);
+		int shards = Math.max(1, Math.min(workers, files.size()));
+
+		ExecutorService executor = Executors.newFixedThreadPool(shards);
+		try {
+			List<Future<LineCounter>> results = new ArrayList<Future<LineCounter>>();
+			for (int shard = 0; shard < shards; shard++) {
+				List<Path> shardFiles = files.subList(files.size() * shard / shards, files.size() * (shard + 1) / shards);
+				int number = shard;
+				results.add(executor.submit(() -> runWithRetries(number, root, shardFiles, onResults)));
+			}
+
+			LineCounter total = new LineCounter();
+			for (Future<LineCounter> result : results) {
+				total.merge(result.get());
+			}
+			return total;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for workers", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			}
+			if (e.getCause() instanceof UncheckedIOException) {
+				throw ((UncheckedIOException)e.getCause()).getCause(); //from onResults
+			}
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdownNow(); //interrupts waiting shards, whose workers are then destroyed
+		}
+	}
+
+	private LineCounter runWithRetries(int shard, Path root, List<Path> files, Consumer<LineCounter> onResults) throws IOException, InterruptedException {
+		IOException failure = null;
+		int[] delivered = {0}; //frames given to onResults so far, over every attempt
+		for (int attempt = 0; attempt <= retries; attempt++) {
+			try {
+				return runShard(root, files, onResults, delivered);
+			} catch (IOException e) {
+				if (failure != null) {
+					e.addSuppressed(failure);
+				}
+				failure = e;
+			}
+		}
+		throw new IOException("Shard "+shard+" failed "+(retries + 1)+" times", failure);
+	}
+
+	/**
+	 * Runs one worker over files and reads its results.
+	 * A worker always sends the same frames for the same files, so the frames an earlier attempt delivered are skipped.
+	 * @param delivered number of frames already given to onResults, counted up as more are
+	 * @throws IOException if the worker couldn't be started, its results were cut short, or it exited with an error
+	 */
+	private LineCounter runShard(Path root, List<Path> files, Consumer<LineCounter> onResults, int[] delivered) throws IOException, InterruptedException {
+		Process process = new ProcessBuilder(command()).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		try {
+			//the worker reads its whole shard before writing anything, so this can't block on its output
+			try (DataOutputStream in = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()))) {
+				in.writeUTF(root.toString());
+				in.writeInt(maxLineLength);
+				in.writeInt(files.size());
+				for (Path file : files) {
+					in.writeUTF(root.relativize(file).toString());
+				}
+			}
+
+			LineCounter shard = new LineCounter();
+			try (DataInputStream out = new DataInputStream(new BufferedInputStream(process.getInputStream(), 64 * 1024))) {
+				for (int frame = 0; out.readBoolean(); frame++) {
+					LineCounter counter = LineCounter.readFrom(out);
+					if (onResults == null) {
+						shard.merge(counter);
+						continue;
+					}
+					shard.mergeTotals(counter);
+					if (frame == delivered[0]) {
+						onResults.accept(counter);
+						delivered[0]++;
+					}
+				}
+			}
+			int exit = process.waitFor();
+			if (exit != 0) {
+				throw new IOException("Worker exited with "+exit);
+			}
+			return shard;
+		} finally {
+			process.destroyForcibly();
+		}
+	}
+
+	private List<String> command() {
+		List<String> command = new ArrayList<String>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(workerOptions);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(workerClass);
+		return command;
+	}
+}
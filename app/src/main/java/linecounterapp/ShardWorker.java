@@ -0,0 +1,68 @@
+package linecounterapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+
+/**
+ * Worker process started by ShardCoordinator. Reads its shard from standard input:
+ * the root folder, the maximum line length and the files to analyze, relative to the root.
+ * Writes the results to standard output in frames of FILES_PER_FRAME files, each a true followed by
+ * LineCounter.writeTo, and a false after the last one. A frame is dropped once written,
+ * so the worker never holds more than a frame's methods.
+ * Files that can't be read are left out and their errors printed to standard error.
+ * Exits with 0 once everything is written, anything else means the shard has to be done again.
+ */
+public class ShardWorker {
+	static final int FILES_PER_FRAME = 256;
+
+	public static void main(String[] args) {
+		try {
+			run(new DataInputStream(new BufferedInputStream(System.in)),
+					new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 64 * 1024)));
+		} catch (IOException e) {
+			System.err.println("Shard worker failed: "+e.toString());
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+
+	static void run(DataInputStream in, DataOutputStream out) throws IOException {
+		Path root = Path.of(in.readUTF());
+		DirectoryAnalyzer analyzer = new DirectoryAnalyzer();
+		analyzer.setMaxLineLength(in.readInt());
+		String[] files = new String[in.readInt()];
+		for (int i = 0; i < files.length; i++) {
+			files[i] = in.readUTF();
+		}
+
+		LineCounter frame = new LineCounter();
+		int inFrame = 0;
+		for (String file : files) {
+			LineCounter counter = analyzer.analyzeFile(root.resolve(file));
+			counter.qualifyMethods(file);
+			frame.merge(counter);
+			if (++inFrame == FILES_PER_FRAME) {
+				out.writeBoolean(true);
+				frame.writeTo(out);
+				frame = new LineCounter();
+				inFrame = 0;
+			}
+		}
+		if (inFrame > 0) {
+			out.writeBoolean(true);
+			frame.writeTo(out);
+		}
+		out.writeBoolean(false);
+		out.flush();
+		for (String failure : analyzer.takeFailures()) {
+			System.err.println(failure); //the coordinator shares its standard error with the worker
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package linecounterapp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+/**
+ * Space-Saving sketch of the most frequent names in a stream, holding at most capacity names.
+ * When a new name arrives and the sketch is full, it takes over the slot of the least counted name,
+ * starting from that name's count. That count is remembered as the new name's error.
+ * Any name seen more than (names seen / capacity) times is guaranteed to be kept,
+ * and each count is at most error too high.
+ */
+class SpaceSaving {
+	private final String[] names;
+	private final long[] counts; //by slot
+	private final long[] errors; //by slot
+	private final int[] heap; //slots ordered by count, least counted first
+	private final int[] positions; //by slot, index in heap
+	private final HashMap<String, Integer> slots = new HashMap<String, Integer>();
+	private int size;
+
+	SpaceSaving(int capacity) {
+		names = new String[capacity];
+		counts = new long[capacity];
+		errors = new long[capacity];
+		heap = new int[capacity];
+		positions = new int[capacity];
+	}
+
+	void add(String name) {
+		Integer slot = slots.get(name);
+		if (slot != null) {
+			counts[slot]++;
+			siftDown(positions[slot]);
+			return;
+		}
+		if (size < names.length) {
+			int added = size++;
+			names[added] = name;
+			counts[added] = 1;
+			heap[added] = added;
+			positions[added] = added;
+			slots.put(name, added);
+			siftUp(added);
+			return;
+		}
+		if (names.length == 0) {
+			return;
+		}
+		int least = heap[0];
+		slots.remove(names[least]);
+		names[least] = name;
+		errors[least] = counts[least];
+		counts[least]++;
+		slots.put(name, least);
+		siftDown(0);
+	}
+
+	/**
+	 * Slots of the names held, most counted first, and by name for equal counts.
+	 */
+	int[] mostFrequent() {
+		Integer[] order = new Integer[size];
+		for (int slot = 0; slot < size; slot++) {
+			order[slot] = slot;
+		}
+		Arrays.sort(order, (a, b) -> counts[a] != counts[b] ? Long.compare(counts[b], counts[a]) : names[a].compareTo(names[b]));
+		int[] sorted = new int[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = order[i];
+		}
+		return sorted;
+	}
+
+	String name(int slot) {
+		return names[slot];
+	}
+
+	long count(int slot) {
+		return counts[slot];
+	}
+
+	/**
+	 * How much count(slot) may be higher than the real count.
+	 */
+	long error(int slot) {
+		return errors[slot];
+	}
+
+
+	private void siftUp(int i) {
+		while (i > 0 && counts[heap[(i - 1) / 2]] > counts[heap[i]]) {
+			swap(i, (i - 1) / 2);
+			i = (i - 1) / 2;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int smallest = i;
+			int left = 2*i + 1, right = left + 1;
+			if (left < size && counts[heap[left]] < counts[heap[smallest]]) smallest = left;
+			if (right < size && counts[heap[right]] < counts[heap[smallest]]) smallest = right;
+			if (smallest == i) {
+				return;
+			}
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void swap(int a, int b) {
+		int temp = heap[a];
+		heap[a] = heap[b];
+		heap[b] = temp;
+		positions[heap[a]] = a;
+		positions[heap[b]] = b;
+	}
+}
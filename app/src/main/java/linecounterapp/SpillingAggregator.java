@@ -0,0 +1,391 @@
+package linecounterapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+
+
+/**
+ * Collects the method and control tables of many files within a heap budget, for trees too big
+ * to keep every method in memory. Give it to DirectoryAnalyzer.analyzeDirectory or ArchiveAnalyzer.analyzeArchive
+ * as the per-file callback, with details turned off in the analyzer, or its add to ShardCoordinator.analyzeDirectory.
+ *
+ * Methods and control counts are kept in memory until their estimated size passes the budget. Then they are written
+ * to run files, sorted the way their tables are, and dropped. writeReport merges the runs and what is still in memory
+ * with a k-way merge, adding up the counts of a control type found in several runs, so the report is the same as
+ * that of LineCounter.writeReport with every file merged in memory.
+ * Safe to use from several threads.
+ */
+public class SpillingAggregator implements BiConsumer<String, LineCounter> {
+	private static final int SPAN_BYTES = 96; //a span's ints and its share of the arrays and tables around it, besides the name
+	private static final int CONTROL_BYTES = 48; //a control type's id, count and slot in the table, besides the name
+
+	private final long budget;
+	private final Path directory; //null for the default temporary directory
+	private final MethodSpans methods = new MethodSpans();
+	private final CountTable controls = new CountTable();
+	private final List<Path> methodRuns = new ArrayList<Path>(); //in the order they were written
+	private final List<Path> controlRuns = new ArrayList<Path>(); //written along with the method runs
+	private long used; //estimated bytes of the methods and control types in memory
+	private int spills;
+	private int mergeWidth = 64; //runs merged at once, if there are more the oldest are first merged into bigger runs
+
+	/**
+	 * @param budget bytes the methods and control counts in memory may take, roughly
+	 */
+	public SpillingAggregator(long budget) {
+		this(budget, null);
+	}
+
+	/**
+	 * @param directory where to write run files, or null for the default temporary directory
+	 */
+	public SpillingAggregator(long budget, Path directory) {
+		this.budget = budget;
+		this.directory = directory;
+	}
+
+	void setMergeWidth(int runs) {
+		this.mergeWidth = runs;
+	}
+
+	/**
+	 * Adds the methods and control structures of one file.
+	 * @param label shown in front of the file's method names, normally its path
+	 * @throws UncheckedIOException if the tables had to be spilled and a run couldn't be written
+	 */
+	@Override
+	public void accept(String label, LineCounter counter) {
+		add(counter, label);
+	}
+
+	/**
+	 * Adds the methods and control structures of files whose methods are labeled already, like the batches ShardCoordinator hands out.
+	 * @throws UncheckedIOException if the tables had to be spilled and a run couldn't be written
+	 */
+	public void add(LineCounter counter) {
+		add(counter, null);
+	}
+
+	/**
+	 * @param label label for every method of counter, or null to keep theirs
+	 */
+	private synchronized void add(LineCounter counter, String label) {
+		int first = methods.size();
+		methods.addAll(counter.methods);
+		CountTable types = counter.controlCounts;
+		for (int id = 0; id < types.ids(); id++) {
+			String type = types.name(id);
+			if (types.containsKey(type) && !controls.containsKey(type)) {
+				used += CONTROL_BYTES + 2 * type.length(); //calls count as controls too, so there can be as many types as methods
+			}
+		}
+		controls.addAll(types);
+		if (label != null) {
+			methods.setSource(label, first);
+			used += 2 * label.length();
+		}
+
+		for (int span = first; span < methods.size(); span++) {
+			used += SPAN_BYTES + 2 * methods.name(span).length();
+		}
+		if (used > budget) {
+			try {
+				spill();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Number of times the tables in memory were written to run files.
+	 */
+	public synchronized int getSpills() {
+		return spills;
+	}
+
+	/**
+	 * Writes the section of a report for everything added, in the same form as LineCounter.writeReport.
+	 * The run files are deleted afterwards, so this can only be called once.
+	 * @param totals counter holding the line and file counts, as returned by the analyzer
+	 */
+	public synchronized void writeReport(ReportWriter out, String path, String summary, LineCounter totals) throws IOException {
+		try {
+			out.section(path, summary, totals);
+			out.beginTable("methods", null, "Method", "Lines");
+			mergeRuns(methodRuns, MemorySource::new, false, (name, startLine, codeLines) -> out.row(name, codeLines));
+			out.endTable();
+			out.beginTable("controls", null, "Control Type", "Count");
+			mergeRuns(controlRuns, ControlSource::new, true, (type, none, count) -> out.row(type, count));
+			out.endTable();
+		} finally {
+			for (Path run : methodRuns) {
+				Files.deleteIfExists(run);
+			}
+			for (Path run : controlRuns) {
+				Files.deleteIfExists(run);
+			}
+			methodRuns.clear();
+			controlRuns.clear();
+		}
+	}
+
+
+	/**
+	 * Writes the methods and control counts in memory to two new run files, in the order of their tables, and drops them.
+	 * Control runs have the same rows as method runs, with the count in place of the code lines and no start line.
+	 */
+	private void spill() throws IOException {
+		try (DataOutputStream out = newRun(methodRuns)) {
+			for (int span : methods.sortedByName()) {
+				writeRow(out, methods.displayName(span), methods.get(span, MethodSpans.START_LINE), methods.get(span, MethodSpans.CODE_LINES));
+			}
+			out.writeBoolean(false);
+		}
+		try (DataOutputStream out = newRun(controlRuns)) {
+			for (String type : controls.sortedNames()) {
+				writeRow(out, type, 0, controls.get(type));
+			}
+			out.writeBoolean(false);
+		}
+		methods.clear();
+		controls.clear();
+		used = 0;
+		spills++;
+	}
+
+	/**
+	 * Creates a run file at the end of runs and opens it for writing.
+	 */
+	private DataOutputStream newRun(List<Path> runs) throws IOException {
+		Path run = directory == null ? Files.createTempFile("linecounter-run", ".bin") : Files.createTempFile(directory, "linecounter-run", ".bin");
+		run.toFile().deleteOnExit(); //in case the report is never written
+		runs.add(run);
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16));
+	}
+
+	/**
+	 * Passes every row of the runs and of the table in memory to sink in order, merging them.
+	 * @param memory creates the source of the rows in memory, given its order among the sources
+	 * @param sum whether rows with the same name are added up into one, as control counts are
+	 */
+	private void mergeRuns(List<Path> runs, IntFunction<Source> memory, boolean sum, MethodSink sink) throws IOException {
+		//with too many runs to read at once, merge the oldest into one run until few enough are left
+		while (runs.size() > mergeWidth) {
+			List<Path> oldest = new ArrayList<Path>(runs.subList(0, mergeWidth));
+			runs.subList(0, mergeWidth).clear();
+
+			List<Source> sources = new ArrayList<Source>();
+			try (DataOutputStream out = newRun(runs)) {
+				runs.add(0, runs.remove(runs.size() - 1)); //stays ahead of the newer runs, so ties keep their order
+				for (Path run : oldest) {
+					sources.add(new RunSource(run, sources.size()));
+				}
+				merge(sources, sum, (name, startLine, codeLines) -> writeRow(out, name, startLine, codeLines));
+				out.writeBoolean(false);
+			} finally {
+				close(sources);
+				for (Path run : oldest) {
+					Files.deleteIfExists(run);
+				}
+			}
+		}
+
+		List<Source> sources = new ArrayList<Source>();
+		try {
+			for (Path run : runs) {
+				sources.add(new RunSource(run, sources.size()));
+			}
+			sources.add(memory.apply(sources.size()));
+			merge(sources, sum, sink);
+		} finally {
+			close(sources);
+		}
+	}
+
+	/**
+	 * K-way merge of sorted sources through a heap of their current rows.
+	 * Rows that compare equal come out in the order of their sources.
+	 * @param sum whether rows with the same name are added up into one
+	 */
+	private static void merge(List<Source> sources, boolean sum, MethodSink sink) throws IOException {
+		if (sum) {
+			Sums sums = new Sums(sink);
+			merge(sources, false, sums);
+			sums.finish();
+			return;
+		}
+		PriorityQueue<Source> heap = new PriorityQueue<Source>(Math.max(1, sources.size()),
+				Comparator.comparing((Source source) -> source.name)
+						.thenComparingInt(source -> source.startLine)
+						.thenComparingInt(source -> source.order));
+		for (Source source : sources) {
+			if (source.next()) {
+				heap.add(source);
+			}
+		}
+		while (!heap.isEmpty()) {
+			Source source = heap.poll();
+			sink.row(source.name, source.startLine, source.codeLines);
+			if (source.next()) {
+				heap.add(source);
+			}
+		}
+	}
+
+	private static void writeRow(DataOutputStream out, String name, int startLine, int codeLines) throws IOException {
+		out.writeBoolean(true);
+		out.writeUTF(name);
+		out.writeInt(startLine);
+		out.writeInt(codeLines);
+	}
+
+	private static void close(List<Source> sources) throws IOException {
+		for (Source source : sources) {
+			source.close();
+		}
+	}
+
+
+	private interface MethodSink {
+		void row(String name, int startLine, int codeLines) throws IOException;
+	}
+
+	/**
+	 * Adds up the counts of rows with the same name, which come out of a merge one after another, and passes on one row for each name.
+	 */
+	private static class Sums implements MethodSink {
+		private final MethodSink sink;
+		private String name; //null before the first row
+		private int count;
+
+		Sums(MethodSink sink) {
+			this.sink = sink;
+		}
+
+		@Override
+		public void row(String name, int startLine, int count) throws IOException {
+			if (!name.equals(this.name)) {
+				finish();
+				this.name = name;
+			}
+			this.count += count;
+		}
+
+		/**
+		 * Passes on the row of the last name.
+		 */
+		void finish() throws IOException {
+			if (name != null) {
+				sink.row(name, 0, count);
+			}
+			name = null;
+			count = 0;
+		}
+	}
+
+	/**
+	 * Sorted methods to merge, positioned on one row at a time.
+	 */
+	private static abstract class Source {
+		final int order; //position among the sources, older first
+		String name;
+		int startLine, codeLines;
+
+		Source(int order) {
+			this.order = order;
+		}
+
+		/**
+		 * Moves to the next row.
+		 * @return false if there are no more rows
+		 */
+		abstract boolean next() throws IOException;
+
+		void close() throws IOException {
+		}
+	}
+
+	private static class RunSource extends Source {
+		private final DataInputStream in;
+
+		RunSource(Path run, int order) throws IOException {
+			super(order);
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+		}
+
+		@Override
+		boolean next() throws IOException {
+			if (!in.readBoolean()) {
+				return false;
+			}
+			name = in.readUTF();
+			startLine = in.readInt();
+			codeLines = in.readInt();
+			return true;
+		}
+
+		@Override
+		void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/**
+	 * The methods still in memory, sorted when the merge starts.
+	 */
+	private class MemorySource extends Source {
+		private final int[] sorted = methods.sortedByName();
+		private int next;
+
+		MemorySource(int order) {
+			super(order);
+		}
+
+		@Override
+		boolean next() {
+			if (next == sorted.length) {
+				return false;
+			}
+			int span = sorted[next++];
+			name = methods.displayName(span);
+			startLine = methods.get(span, MethodSpans.START_LINE);
+			codeLines = methods.get(span, MethodSpans.CODE_LINES);
+			return true;
+		}
+	}
+
+	/**
+	 * The control counts still in memory, sorted when the merge starts.
+	 */
+	private class ControlSource extends Source {
+		private final String[] sorted = controls.sortedNames();
+		private int next;
+
+		ControlSource(int order) {
+			super(order);
+		}
+
+		@Override
+		boolean next() {
+			if (next == sorted.length) {
+				return false;
+			}
+			name = sorted[next++];
+			codeLines = controls.get(name);
+			return true;
+		}
+	}
+}
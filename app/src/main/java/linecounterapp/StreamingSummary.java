@@ -0,0 +1,137 @@
+package linecounterapp;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * Listener that keeps a summary of the methods and control structures of any number of files in fixed memory:
+ * the longest methods, the most frequent control names and quantiles of method length.
+ * Control names include every call that looks like one, so there can be far more of them than fit;
+ * they are counted with a SpaceSaving sketch, whose counts are approximate once it is full.
+ * Used with DirectoryAnalyzer.setKeepDetails(false), memory stays the same however large the tree.
+ * Thread safe, as DirectoryAnalyzer's listeners have to be.
+ */
+public class StreamingSummary implements LineCounterListener {
+	/** Quantiles of method length in the report, as fractions and their row names. */
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+	private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99"};
+	private static final int SKETCH_FACTOR = 8; //names held by the sketch per name reported
+
+	private final int k;
+	private final String[] longestNames; //heap of the longest methods, shortest first
+	private final int[] longestLines;
+	private int longestSize;
+	private final SpaceSaving controls;
+	private final LengthHistogram lengths = new LengthHistogram();
+
+	/**
+	 * @param k number of longest methods and of most frequent control names to report
+	 */
+	public StreamingSummary(int k) {
+		this.k = k;
+		longestNames = new String[k];
+		longestLines = new int[k];
+		controls = new SpaceSaving(k * SKETCH_FACTOR);
+	}
+
+	@Override
+	public synchronized void methodClosed(String name, int startLine, int endLine, int codeLines) {
+		lengths.add(codeLines);
+		if (longestSize < k) {
+			longestNames[longestSize] = name;
+			longestLines[longestSize] = codeLines;
+			siftUp(longestSize++);
+		}
+		else if (k > 0 && codeLines > longestLines[0]) {
+			longestNames[0] = name;
+			longestLines[0] = codeLines;
+			siftDown(0);
+		}
+	}
+
+	@Override
+	public synchronized void controlFound(String type) {
+		controls.add(type);
+	}
+
+	/**
+	 * Number of methods seen.
+	 */
+	public synchronized long methodCount() {
+		return lengths.count();
+	}
+
+	/**
+	 * Code lines of the method at quantile q, to within 1/64 of its value.
+	 */
+	public synchronized int lengthQuantile(double q) {
+		return lengths.quantile(q);
+	}
+
+	/**
+	 * Writes the longest methods, the most frequent control names and the length quantiles as three tables.
+	 */
+	synchronized void writeReport(ReportWriter out) throws IOException {
+		out.beginTable("longest", "Longest methods:", "Method", "Lines");
+		Integer[] order = new Integer[longestSize];
+		for (int i = 0; i < longestSize; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> longestLines[a] != longestLines[b] ? Integer.compare(longestLines[b], longestLines[a])
+				: longestNames[a].compareTo(longestNames[b]));
+		for (int i : order) {
+			out.row(longestNames[i], longestLines[i]);
+		}
+		out.endTable();
+
+		out.beginTable("frequent_controls", "Most frequent control structures (count may be up to Overcount too high):",
+				"Control Type", "Count", "Overcount");
+		int[] frequent = controls.mostFrequent();
+		for (int i = 0; i < Math.min(k, frequent.length); i++) {
+			int slot = frequent[i];
+			out.row(controls.name(slot), (int)Math.min(controls.count(slot), Integer.MAX_VALUE),
+					(int)Math.min(controls.error(slot), Integer.MAX_VALUE));
+		}
+		out.endTable();
+
+		out.beginTable("method_lines", "Method lengths:", "Quantile", "Lines");
+		out.row("min", lengths.min());
+		for (int i = 0; i < QUANTILES.length; i++) {
+			out.row(QUANTILE_NAMES[i], lengths.quantile(QUANTILES[i]));
+		}
+		out.row("max", lengths.max());
+		out.endTable();
+	}
+
+
+	private void siftUp(int i) {
+		while (i > 0 && longestLines[(i - 1) / 2] > longestLines[i]) {
+			swap(i, (i - 1) / 2);
+			i = (i - 1) / 2;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int smallest = i;
+			int left = 2*i + 1, right = left + 1;
+			if (left < longestSize && longestLines[left] < longestLines[smallest]) smallest = left;
+			if (right < longestSize && longestLines[right] < longestLines[smallest]) smallest = right;
+			if (smallest == i) {
+				return;
+			}
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void swap(int a, int b) {
+		String name = longestNames[a];
+		longestNames[a] = longestNames[b];
+		longestNames[b] = name;
+		int lines = longestLines[a];
+		longestLines[a] = longestLines[b];
+		longestLines[b] = lines;
+	}
+}
@@ -0,0 +1,132 @@
+package linecounterapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+
+
+/**
+ * Fills the result tables while an analysis is still running.
+ * Events from the analysis threads are queued, and the FX thread takes everything queued so far in one batch.
+ * At most one batch is waiting on the FX thread at a time, however fast the events come in.
+ */
+class TableFeeder implements LineCounterListener {
+	private static final int LINES_PER_UPDATE = 4096; //lines read between status updates when nothing else is found
+
+	final ResultRows methodRows = new ResultRows();
+	final ResultRows controlRows = new ResultRows();
+	private final HashMap<String, Integer> controlsByName = new HashMap<String, Integer>(); //row of each control type, FX thread only
+	private final Consumer<String> status;
+
+	private final Object lock = new Object();
+	private ArrayList<String> pendingMethods = new ArrayList<String>(); //guarded by lock, like the two below
+	private int[] pendingLines = new int[64]; //code lines of each pending method
+	private CountTable pendingControls = new CountTable();
+	private final LongAdder lines = new LongAdder();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private volatile boolean stopped;
+
+	/**
+	 * @param status shows progress text, called on the FX thread
+	 */
+	TableFeeder(Consumer<String> status) {
+		this.status = status;
+	}
+
+	@Override
+	public void methodClosed(String name, int startLine, int endLine, int codeLines) {
+		synchronized (lock) {
+			if (pendingMethods.size() == pendingLines.length) {
+				pendingLines = Arrays.copyOf(pendingLines, pendingLines.length * 2);
+			}
+			pendingLines[pendingMethods.size()] = codeLines;
+			pendingMethods.add(name);
+		}
+		schedule();
+	}
+
+	@Override
+	public void controlFound(String type) {
+		synchronized (lock) {
+			pendingControls.increment(pendingControls.intern(type));
+		}
+		schedule();
+	}
+
+	@Override
+	public void lineClassified(int line, boolean code) {
+		lines.increment();
+		if (line % LINES_PER_UPDATE == 0) {
+			schedule();
+		}
+	}
+
+	/**
+	 * Stops updating the tables, for when another analysis has taken them over.
+	 */
+	void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Adds whatever is still queued and shows the final summary. Call on the FX thread once the analysis is done.
+	 */
+	void finish(String summary) {
+		if (stopped) {
+			return;
+		}
+		flush();
+		methodRows.sort(true, true);
+		controlRows.sort(true, true);
+		status.accept(summary);
+	}
+
+	private void schedule() {
+		if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+			Platform.runLater(this::flush);
+		}
+	}
+
+	/**
+	 * Moves the queued events into the tables, on the FX thread.
+	 */
+	private void flush() {
+		scheduled.set(false); //before taking the batch, so nothing queued after this is left waiting
+		if (stopped) {
+			return;
+		}
+
+		ArrayList<String> methods;
+		int[] codeLines;
+		CountTable controls;
+		synchronized (lock) {
+			methods = pendingMethods;
+			codeLines = pendingLines;
+			controls = pendingControls;
+			pendingMethods = new ArrayList<String>();
+			pendingLines = new int[64];
+			pendingControls = new CountTable();
+		}
+
+		for (int i = 0; i < methods.size(); i++) {
+			methodRows.add(methods.get(i), codeLines[i]);
+		}
+		methodRows.showNew();
+		for (String type : controls.sortedNames()) {
+			Integer row = controlsByName.get(type);
+			if (row == null) {
+				controlsByName.put(type, controlRows.add(type, controls.get(type)));
+			}
+			else {
+				controlRows.setCount(row, controlRows.count(row) + controls.get(type));
+			}
+		}
+		controlRows.showNew();
+		status.accept("Reading... "+lines.sum()+" lines, "+methodRows.size()+" methods so far");
+	}
+}
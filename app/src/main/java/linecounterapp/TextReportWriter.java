@@ -0,0 +1,74 @@
+package linecounterapp;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * The fixed width text report the command line tool has always printed:
+ * the summary, then each table with the name column 50 characters wide and the others 10, separated by " | ".
+ */
+class TextReportWriter extends ChannelReportWriter {
+	private final boolean showPaths;
+
+	TextReportWriter(WritableByteChannel channel, boolean showPaths) {
+		super(channel);
+		this.showPaths = showPaths;
+	}
+
+	@Override
+	public void section(String path, String summary, LineCounter counter) throws IOException {
+		if (showPaths) {
+			line.append("== ").append(path).append(" ==");
+			writeLine();
+		}
+		line.append(summary).append('\n');
+		writeLine();
+	}
+
+	@Override
+	public void beginTable(String table, String title, String... columns) throws IOException {
+		if (title != null) {
+			line.append(title);
+			writeLine();
+		}
+		pad(columns[0].toUpperCase(), 50);
+		for (int i = 1; i < columns.length; i++) {
+			line.append(" | ");
+			pad(columns[i].toUpperCase(), 10);
+		}
+		writeLine();
+	}
+
+	@Override
+	public void row(String name, int... values) throws IOException {
+		pad(name, 50);
+		for (int value : values) {
+			line.append(" | ");
+			int start = line.length();
+			line.append(value);
+			padFrom(start, 10);
+		}
+		writeLine();
+	}
+
+	@Override
+	public void endTable() throws IOException {
+		writeLine(); //blank line after the table
+	}
+
+	/**
+	 * Appends text left aligned in width columns, like %-Ns, without cutting it off if it's longer.
+	 */
+	private void pad(String text, int width) {
+		int start = line.length();
+		line.append(text);
+		padFrom(start, width);
+	}
+
+	private void padFrom(int start, int width) {
+		for (int i = line.length() - start; i < width; i++) {
+			line.append(' ');
+		}
+	}
+}
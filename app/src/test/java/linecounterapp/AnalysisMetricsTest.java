@@ -0,0 +1,31 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+
+class AnalysisMetricsTest {
+	@Test void countsEveryLineOfAnalyzedFiles() {
+		AnalysisMetrics metrics = AnalysisMetrics.get();
+		long files = metrics.getFiles(), lines = metrics.getLines(), code = metrics.getCodeLines();
+		long blank = metrics.getBlankLines(), comment = metrics.getCommentLines(), headers = metrics.getMethodHeaders();
+
+		LineCounter counter = new LineCounter();
+		counter.analyzeFile(new File("../testfile.java"));
+
+		//other tests may be analyzing at the same time, so only check that at least this file was added
+		assertTrue(metrics.getFiles() - files >= 1);
+		assertTrue(metrics.getCodeLines() - code >= counter.linecount);
+		assertTrue(metrics.getMethodHeaders() - headers >= counter.methods.size());
+		assertTrue(metrics.getLines() - lines >= counter.linecount + counter.nonCodeLines);
+		assertTrue((metrics.getBlankLines() - blank) + (metrics.getCommentLines() - comment) >= counter.nonCodeLines);
+		assertTrue(metrics.getScanNanos() > 0);
+	}
+
+	@Test void registersOnce() {
+		assertTrue(AnalysisMetrics.register());
+		assertTrue(AnalysisMetrics.register());
+	}
+}
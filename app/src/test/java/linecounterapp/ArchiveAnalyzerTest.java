@@ -0,0 +1,58 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArchiveAnalyzerTest {
+	@TempDir
+	Path root;
+
+	@Test void archiveMatchesTheSameTreeOnDisk() throws IOException {
+		byte[] source = Files.readAllBytes(new File("../testfile.java").toPath());
+		Path tree = Files.createDirectories(root.resolve("tree"));
+		Files.createDirectories(tree.resolve("a"));
+		Files.createDirectories(tree.resolve("b/c"));
+		Files.write(tree.resolve("a/One.java"), source);
+		Files.write(tree.resolve("b/c/Two.java"), source);
+
+		Path archive = root.resolve("sources.jar");
+		try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+			write(zip, "a/", new byte[0]);
+			write(zip, "a/One.java", source);
+			write(zip, "b/c/Two.java", source);
+			write(zip, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes());
+		}
+
+		Map<String, LineCounter> entries = new ConcurrentHashMap<String, LineCounter>();
+		LineCounter fromArchive = new ArchiveAnalyzer().analyzeArchive(archive.toFile(), entries::put);
+		LineCounter fromTree = new DirectoryAnalyzer().analyzeDirectory(tree.toFile());
+
+		assertEquals(fromTree.getSummary(), fromArchive.getSummary());
+		assertEquals(fromTree.controlCounts, fromArchive.controlCounts);
+		assertEquals(CounterTables.methodTable(fromTree).replace(File.separatorChar, '/'), CounterTables.methodTable(fromArchive));
+		assertEquals(2, entries.size());
+		assertEquals(fromTree.linecount / 2, entries.get("a/One.java").linecount);
+	}
+
+	@Test void brokenArchiveThrows() throws IOException {
+		Path archive = Files.writeString(root.resolve("broken.zip"), "not a zip");
+		assertThrows(IOException.class, () -> new ArchiveAnalyzer().analyzeArchive(archive.toFile()));
+	}
+
+	private static void write(ZipOutputStream zip, String name, byte[] bytes) throws IOException {
+		zip.putNextEntry(new ZipEntry(name));
+		zip.write(bytes);
+		zip.closeEntry();
+	}
+}
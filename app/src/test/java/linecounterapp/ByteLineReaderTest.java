@@ -0,0 +1,26 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ByteLineReaderTest {
+	@TempDir
+	Path root;
+
+	@Test void filesOver2GBAreAnIOException() throws IOException {
+		Path file = root.resolve("Huge.java");
+		try (RandomAccessFile sparse = new RandomAccessFile(file.toFile(), "rw")) {
+			sparse.setLength(Integer.MAX_VALUE + 1L); //sparse, takes no space on disk
+		}
+
+		IOException e = assertThrows(IOException.class, () -> new ByteLineReader().open(file));
+		assertTrue(e.getMessage().startsWith("File too large"));
+		assertTrue(new LineCounter().analyzeFile(file.toFile()).startsWith("Could not read file"));
+	}
+}
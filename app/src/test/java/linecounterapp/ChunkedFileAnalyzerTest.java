@@ -0,0 +1,96 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChunkedFileAnalyzerTest {
+	@TempDir
+	Path root;
+
+	@Test void chunksGiveTheSequentialResult() throws IOException {
+		byte[] source = Files.readAllBytes(new File("../testfile.java").toPath());
+		ByteBuffer bytes = ByteBuffer.wrap(repeat(source, 20));
+		LineCounter sequential = new LineCounter();
+		sequential.analyzeBytes(bytes);
+
+		//small chunks so they end inside methods, comments and headers waiting for their brace
+		for (int chunkSize : new int[] {1, 97, 1000, 4096, 1 << 20}) {
+			ChunkedFileAnalyzer analyzer = new ChunkedFileAnalyzer();
+			analyzer.setChunkSize(chunkSize);
+			assertSameResult(sequential, analyzer.analyzeBytes(bytes));
+		}
+	}
+
+	@Test void windowsGiveTheSequentialResult() throws IOException {
+		byte[] source = repeat(Files.readAllBytes(new File("../testfile.java").toPath()), 20);
+		File file = Files.write(root.resolve("Huge.java"), source).toFile();
+		LineCounter sequential = new LineCounter();
+		sequential.analyzeFile(file);
+
+		//small windows stand in for the 2GB ones of a huge file
+		for (int windowSize : new int[] {500, 4096, source.length - 1}) {
+			ChunkedFileAnalyzer analyzer = new ChunkedFileAnalyzer();
+			analyzer.setWindowSize(windowSize);
+			analyzer.setChunkSize(97);
+			assertSameResult(sequential, analyzer.analyzeFile(file));
+		}
+
+		ChunkedFileAnalyzer analyzer = new ChunkedFileAnalyzer();
+		analyzer.setWindowSize(10);
+		assertThrows(IOException.class, () -> analyzer.analyzeFile(file));
+	}
+
+	@Test void randomLinesGiveTheSequentialResult() {
+		String[] lines = {"/*", "*/", "/* one line */", "// comment", "", "  ", "void a() {", "int b(int x)", "{", "}",
+				"if (x) {", "} else {", "else", "x = \"{\";", "void c();", "while (true) {", "call(y);", "} }", "{ {"};
+		Random random = new Random(11);
+		for (int round = 0; round < 50; round++) {
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < 400; i++) {
+				text.append(lines[random.nextInt(lines.length)]).append(random.nextInt(8) == 0 ? "\r\n" : "\n");
+			}
+			ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes());
+			LineCounter sequential = new LineCounter();
+			sequential.analyzeBytes(bytes);
+
+			ChunkedFileAnalyzer analyzer = new ChunkedFileAnalyzer();
+			analyzer.setChunkSize(1 + random.nextInt(300));
+			assertSameResult(sequential, analyzer.analyzeBytes(bytes));
+		}
+	}
+
+	private static void assertSameResult(LineCounter expected, LineCounter actual) {
+		assertEquals(expected.getSummary(), actual.getSummary());
+		assertEquals(expected.controlCounts, actual.controlCounts);
+		assertEquals(spans(expected), spans(actual));
+	}
+
+	private static String spans(LineCounter counter) {
+		StringBuilder text = new StringBuilder();
+		for (int span = 0; span < counter.methods.size(); span++) {
+			text.append(counter.methods.name(span));
+			for (int field : new int[] {MethodSpans.START_LINE, MethodSpans.END_LINE, MethodSpans.CODE_LINES, MethodSpans.DEPTH}) {
+				text.append(' ').append(counter.methods.get(span, field));
+			}
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	private static byte[] repeat(byte[] bytes, int times) {
+		byte[] repeated = new byte[bytes.length * times];
+		for (int i = 0; i < times; i++) {
+			System.arraycopy(bytes, 0, repeated, i * bytes.length, bytes.length);
+		}
+		return repeated;
+	}
+}
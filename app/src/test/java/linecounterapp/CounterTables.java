@@ -0,0 +1,49 @@
+package linecounterapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Method tables and reports of a LineCounter as text, for tests that compare the results of analyzing the same files in different ways.
+ */
+final class CounterTables {
+	private CounterTables() {
+	}
+
+	/**
+	 * Every method with its code lines, one "name=lines" per line, in the order of visitMethods.
+	 */
+	static String methodTable(LineCounter counter) {
+		StringBuilder table = new StringBuilder();
+		counter.visitMethods((name, count) -> table.append(name).append('=').append(count).append('\n'));
+		return table.toString();
+	}
+
+	/**
+	 * The method table as the text report shows it, without the blank line after it.
+	 */
+	static String formattedMethodTable(LineCounter counter) {
+		StringBuilder table = new StringBuilder(String.format("%-50s | %-10s", "METHOD", "LINES"));
+		counter.visitMethods((name, count) -> table.append(String.format("\n%-50s | %-10s", name, count)));
+		return table.toString();
+	}
+
+	/**
+	 * The text report of a tree, from the counter, or from spilling with the counter's totals.
+	 * @param spilling aggregator the methods went to, or null if they are in counter
+	 */
+	static String textReport(LineCounter counter, SpillingAggregator spilling) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ReportWriter out = ReportWriter.forFormat("text", Channels.newChannel(bytes), false);
+		if (spilling == null) {
+			counter.writeReport(out, "tree", counter.getSummary());
+		}
+		else {
+			spilling.writeReport(out, "tree", counter.getSummary(), counter);
+		}
+		out.flush();
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,167 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DirectoryAnalyzerTest {
+	@TempDir
+	Path root;
+
+	@Test void directoryTotalsMatchSumOfFiles() throws IOException {
+		Path source = new File("../testfile.java").toPath();
+		Files.createDirectories(root.resolve("a"));
+		Files.createDirectories(root.resolve("b/c"));
+		Files.copy(source, root.resolve("a/One.java"));
+		Files.copy(source, root.resolve("b/c/Two.java"));
+		Files.writeString(root.resolve("notes.txt"), "not java");
+
+		LineCounter single = new LineCounter();
+		single.analyzeFile(source.toFile());
+		LineCounter total = new DirectoryAnalyzer().analyzeDirectory(root.toFile());
+
+		assertEquals(2, total.filecount);
+		assertEquals(2 * single.linecount, total.linecount);
+		assertEquals(2 * single.nonCodeLines, total.nonCodeLines);
+		assertEquals(2 * single.methods.size(), total.methods.size());
+		assertEquals(2 * single.controlCounts.get("if"), total.controlCounts.get("if"));
+		assertEquals(codeLines(single, "isEmpty()"), codeLines(total, Path.of("a", "One.java")+": isEmpty()"));
+	}
+
+	@Test void copiesAreAnalyzedOnceButCountedForEachPath() throws IOException {
+		Path source = new File("../testfile.java").toPath();
+		Files.createDirectories(root.resolve("vendor"));
+		Files.copy(source, root.resolve("One.java"));
+		Files.copy(source, root.resolve("vendor/One.java"));
+		Files.copy(source, root.resolve("vendor/Two.java"));
+		byte[] changed = Files.readAllBytes(source);
+		changed[changed.length / 2] ^= 1; //same size, different contents
+		Files.write(root.resolve("Changed.java"), changed);
+
+		LineCounter plain = new DirectoryAnalyzer().analyzeDirectory(root.toFile());
+		DirectoryAnalyzer analyzer = new DirectoryAnalyzer();
+		analyzer.setDeduplicate(true);
+		LineCounter deduplicated = analyzer.analyzeDirectory(root.toFile());
+
+		assertEquals(2, analyzer.getDuplicateFiles());
+		assertEquals(2 * Files.size(source), analyzer.getDuplicateBytes());
+		assertEquals(plain.getSummary(), deduplicated.getSummary());
+		assertEquals(plain.controlCounts, deduplicated.controlCounts);
+		assertEquals(CounterTables.methodTable(plain), CounterTables.methodTable(deduplicated));
+		assertEquals(codeLines(plain, "One.java: isEmpty()"), codeLines(deduplicated, Path.of("vendor", "Two.java")+": isEmpty()"));
+	}
+
+	@Test void resetCounterMatchesNewOne() throws IOException {
+		Path other = Files.writeString(root.resolve("Other.java"), "class Other {\n\tvoid x() {\n\t\twhile (y) {\n\t\t}\n\t}\n}\n");
+		LineCounter reused = new LineCounter();
+		reused.analyzeFile(new File("../testfile.java"));
+		reused.qualifyMethods("first");
+		reused.reset();
+		reused.analyzeFile(other.toFile());
+
+		LineCounter fresh = new LineCounter();
+		fresh.analyzeFile(other.toFile());
+		assertEquals(fresh.getSummary(), reused.getSummary());
+		assertEquals(fresh.controlCounts, reused.controlCounts);
+		assertEquals(CounterTables.methodTable(fresh), CounterTables.methodTable(reused));
+	}
+
+	@Test void unreadableFilesAreLeftOutAndKept() throws IOException {
+		Files.writeString(root.resolve("A.java"), "class A {\n\tvoid a() {\n\t}\n}\n");
+		Path gone = Files.writeString(root.resolve("B.java"), "class B {\n\tvoid b() {\n\t}\n}\n");
+		DirectoryAnalyzer analyzer = new DirectoryAnalyzer();
+
+		//so few files are done in order by one task, B.java is listed but no longer there when it is read
+		LineCounter total = analyzer.analyzeDirectory(root.toFile(), (path, counter) -> {
+			try {
+				Files.deleteIfExists(gone);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		assertEquals(1, total.filecount);
+		List<String> failures = analyzer.takeFailures();
+		assertEquals(1, failures.size());
+		assertTrue(failures.get(0).startsWith("File not found"));
+		assertTrue(failures.get(0).contains("B.java"));
+		assertTrue(analyzer.takeFailures().isEmpty());
+	}
+
+	@Test void cancelledAnalysisThrows() throws IOException {
+		Files.writeString(root.resolve("A.java"), "class A {}\n");
+		DirectoryAnalyzer analyzer = new DirectoryAnalyzer();
+		analyzer.cancel();
+		assertThrows(CancellationException.class, () -> analyzer.analyzeDirectory(root.toFile()));
+	}
+
+	@Test void mergeIsAssociative() {
+		LineCounter a = counter("if", 1, "a()", 3);
+		LineCounter b = counter("if", 2, "b()", 4);
+		LineCounter c = counter("for", 5, "c()", 6);
+
+		LineCounter left = counter(null, 0, null, 0);
+		left.merge(a);
+		left.merge(b);
+		left.merge(c);
+
+		LineCounter bc = counter(null, 0, null, 0);
+		bc.merge(b);
+		bc.merge(c);
+		LineCounter right = counter(null, 0, null, 0);
+		right.merge(a);
+		right.merge(bc);
+
+		assertEquals(left.controlCounts, right.controlCounts);
+		assertEquals(CounterTables.methodTable(left), CounterTables.methodTable(right));
+		assertEquals(3, left.controlCounts.get("if"));
+	}
+
+	@Test void subtractUndoesMerge() {
+		LineCounter a = counter("if", 1, "a()", 3);
+		LineCounter b = counter("if", 2, "b()", 0);
+		LineCounter total = counter(null, 0, null, 0);
+		total.merge(a);
+		total.merge(b);
+
+		total.subtract(b);
+		assertEquals(a.controlCounts, total.controlCounts);
+		assertEquals(CounterTables.methodTable(a), CounterTables.methodTable(total));
+		assertEquals(a.linecount, total.linecount);
+
+		total.subtract(a);
+		assertTrue(total.controlCounts.isEmpty());
+		assertEquals(0, total.methods.size());
+	}
+
+	private static LineCounter counter(String control, int controls, String method, int length) {
+		LineCounter counter = new LineCounter();
+		if (control != null) {
+			counter.controlCounts.put(control, controls);
+			int span = counter.methods.add(counter.methods.names.intern(method), 1);
+			counter.methods.close(span, length + 1, length, 1);
+			counter.qualifyMethods(method+" file");
+			counter.linecount = length;
+			counter.filecount = 1;
+		}
+		return counter;
+	}
+
+	private static int codeLines(LineCounter counter, String method) {
+		for (int span = 0; span < counter.methods.size(); span++) {
+			if (counter.methods.displayName(span).equals(method)) {
+				return counter.methods.get(span, MethodSpans.CODE_LINES);
+			}
+		}
+		return -1;
+	}
+}
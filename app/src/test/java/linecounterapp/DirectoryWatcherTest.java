@@ -0,0 +1,127 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DirectoryWatcherTest {
+	@TempDir
+	Path root;
+
+	@Test void updatesMatchAFreshAnalysis() throws IOException, InterruptedException {
+		Files.copy(new File("../testfile.java").toPath(), root.resolve("One.java"));
+		Files.writeString(root.resolve("Gone.java"), "class Gone {\n\tvoid g() {\n\t\tif (x) {\n\t\t}\n\t}\n}\n");
+		Files.createDirectories(root.resolve("old/deeper"));
+		Files.writeString(root.resolve("old/Old.java"), "class Old {\n\tvoid o() {\n\t\twhile (x) {\n\t\t}\n\t}\n}\n");
+		Files.writeString(root.resolve("old/deeper/Older.java"), "class Older {\n\tvoid o() {\n\t}\n}\n");
+		MethodIndex.Builder index = new MethodIndex.Builder();
+		DirectoryWatcher watcher = new DirectoryWatcher(root.toFile(), new DirectoryAnalyzer(), ForkJoinPool.commonPool());
+		watcher.setIndex(index);
+		watcher.start();
+
+		Files.writeString(root.resolve("One.java"), "\nclass Added {\n\tvoid a() {\n\t\tswitch (y) {\n\t\t}\n\t}\n}\n", StandardOpenOption.APPEND);
+		Files.delete(root.resolve("Gone.java"));
+		Files.delete(root.resolve("old/deeper/Older.java"));
+		Files.delete(root.resolve("old/deeper"));
+		Files.delete(root.resolve("old/Old.java"));
+		Files.delete(root.resolve("old"));
+		Files.createDirectories(root.resolve("new/sub"));
+		Files.writeString(root.resolve("new/sub/New.java"), "class New {\n\tint n() {\n\t\tfor (;;) {\n\t\t}\n\t}\n}\n");
+		Files.writeString(root.resolve("Two.java"), "class Two {\n\tvoid t() {\n\t\tt();\n\t}\n}\n");
+
+		LineCounter updated = watchOnce(watcher);
+		assertSameCounts(new DirectoryAnalyzer().analyzeDirectory(root.toFile()), updated);
+		assertEquals(3, updated.filecount);
+		Path file = Files.createTempFile("methods", ".idx");
+		try {
+			index.write(file);
+			assertEquals(updated.methods.size(), MethodIndex.open(file).methodCount());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test void lostEventsRescanTheTree() throws IOException, InterruptedException {
+		Files.writeString(root.resolve("A.java"), "class A {\n\tvoid a() {\n\t}\n}\n");
+		DirectoryWatcher watcher = new DirectoryWatcher(root.toFile(), new DirectoryAnalyzer(), ForkJoinPool.commonPool());
+		watcher.start();
+
+		//more events than a watch key holds, so they are replaced by an OVERFLOW, and the new folder's creation is lost
+		Files.delete(root.resolve("A.java"));
+		for (int i = 0; i < 600; i++) {
+			Files.writeString(root.resolve("C"+i+".java"), "class C"+i+" {\n\tvoid c() {\n\t\tif (x) {\n\t\t}\n\t}\n}\n");
+		}
+		Files.createDirectories(root.resolve("late"));
+		Files.writeString(root.resolve("late/L.java"), "class L {\n}\n");
+
+		BlockingQueue<LineCounter> updates = new LinkedBlockingQueue<LineCounter>();
+		Thread thread = watchInBackground(watcher, updates);
+		try {
+			LineCounter updated = nextUpdate(updates);
+			assertSameCounts(new DirectoryAnalyzer().analyzeDirectory(root.toFile()), updated);
+			assertEquals(601, updated.filecount);
+
+			//only seen if the rescan watches the folder
+			Files.writeString(root.resolve("late/L.java"), "class L {\n\tvoid l() {\n\t\twhile (x) {\n\t\t}\n\t}\n}\n");
+			updated = nextUpdate(updates);
+			assertSameCounts(new DirectoryAnalyzer().analyzeDirectory(root.toFile()), updated);
+		} finally {
+			watcher.close();
+			thread.join(30_000);
+		}
+	}
+
+	/**
+	 * Runs watch on another thread and closes the watcher after its first update.
+	 * @return the counts of that update
+	 */
+	private static LineCounter watchOnce(DirectoryWatcher watcher) throws IOException, InterruptedException {
+		BlockingQueue<LineCounter> updates = new LinkedBlockingQueue<LineCounter>();
+		Thread thread = watchInBackground(watcher, updates);
+		try {
+			return nextUpdate(updates);
+		} finally {
+			watcher.close();
+			thread.join(30_000);
+		}
+	}
+
+	/**
+	 * Runs watch on another thread, which puts every update in updates, until the watcher is closed.
+	 * The counts of an update are only settled until the next change.
+	 */
+	private static Thread watchInBackground(DirectoryWatcher watcher, BlockingQueue<LineCounter> updates) {
+		Thread thread = new Thread(() -> {
+			try {
+				watcher.watch(updates::add);
+			} catch (IOException e) {
+				throw new AssertionError(e);
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	private static LineCounter nextUpdate(BlockingQueue<LineCounter> updates) throws InterruptedException {
+		LineCounter updated = updates.poll(30, TimeUnit.SECONDS);
+		assertNotNull(updated, "no update within 30 seconds");
+		return updated;
+	}
+
+	private static void assertSameCounts(LineCounter expected, LineCounter actual) {
+		assertEquals(expected.getSummary(), actual.getSummary());
+		assertEquals(expected.controlCounts, actual.controlCounts);
+		assertEquals(CounterTables.methodTable(expected), CounterTables.methodTable(actual));
+	}
+}
@@ -0,0 +1,79 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitDeltaAnalyzerTest {
+	@TempDir
+	Path repository;
+
+	@Test void reportsChangesBetweenRevisions() throws IOException, InterruptedException {
+		git("init", "-q");
+		Files.writeString(repository.resolve("A.java"), "class A {\n\tvoid a() {\n\t\tx();\n\t}\n}\n");
+		Files.writeString(repository.resolve("Same.java"), "class Same {\n\tvoid s() {\n\t}\n}\n");
+		Files.writeString(repository.resolve("notes.txt"), "one\n");
+		commit("first");
+
+		Files.writeString(repository.resolve("A.java"), "class A {\n\tvoid a() {\n\t\tif (y) {\n\t\t\tx();\n\t\t}\n\t}\n}\n");
+		Files.createDirectories(repository.resolve("b"));
+		Files.writeString(repository.resolve("b/B.java"), "class B {\n\tint b() {\n\t\treturn 1;\n\t}\n}\n");
+		Files.writeString(repository.resolve("notes.txt"), "two\n");
+		commit("second");
+
+		GitDelta delta = new GitDeltaAnalyzer(repository.toFile()).analyze("HEAD~1", "HEAD");
+
+		assertEquals(2, delta.getFiles().size());
+		assertEquals(2, delta.methodDelta("A.java: a()"));
+		assertEquals(2, delta.methodDelta("b/B.java: b()"));
+		assertEquals(1, delta.controlDelta("if"));
+		assertEquals(1, delta.getBefore().filecount);
+		assertEquals(2, delta.getAfter().filecount);
+
+		String text = write(delta, "text");
+		assertTrue(text.startsWith(delta.getSummary()+"\n\n"));
+		assertFalse(text.contains("Same.java"));
+		String csv = write(delta, "csv");
+		assertTrue(csv.contains("\nrepository,methods,b/B.java: b(),0,2,2\n"));
+		assertTrue(csv.contains("\nrepository,controls,if,0,1,1\n"));
+	}
+
+	@Test void unknownRevisionsAreReported() throws IOException, InterruptedException {
+		git("init", "-q");
+		Files.writeString(repository.resolve("A.java"), "class A {}\n");
+		commit("first");
+
+		assertThrows(IOException.class, () -> new GitDeltaAnalyzer(repository.toFile()).analyze("HEAD", "no-such-branch"));
+	}
+
+	private static String write(GitDelta delta, String format) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ReportWriter out = ReportWriter.forFormat(format, Channels.newChannel(bytes), false);
+		delta.writeReport(out, "repository");
+		out.flush();
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private void commit(String message) throws IOException, InterruptedException {
+		git("add", "-A");
+		git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", message);
+	}
+
+	private void git(String... args) throws IOException, InterruptedException {
+		String[] command = new String[args.length + 3];
+		command[0] = "git";
+		command[1] = "-C";
+		command[2] = repository.toString();
+		System.arraycopy(args, 0, command, 3, args.length);
+		Process process = new ProcessBuilder(command).inheritIO().start();
+		assertEquals(0, process.waitFor());
+	}
+}
@@ -0,0 +1,99 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks LineClassifier against the regular expressions LineCounter used before it.
+ */
+class LineClassifierTest {
+	private static final Pattern SINGLE_COMMENT = Pattern.compile("^\\s*//.*$");
+	private static final Pattern MULTI_COMMENT_BEGIN = Pattern.compile("^\\s*/\\*.*$");
+	private static final Pattern MULTI_COMMENT_END = Pattern.compile("^.*\\*/.*$");
+	private static final Pattern WHITESPACE = Pattern.compile("^\\s*$");
+	private static final Pattern METHOD = Pattern.compile("^\\h*.*[\\w <>,]+(?<!new)\\h+(\\w+\\h*\\((?:[\\w <>,]+\\h+\\w+,?\\h*)*\\)).*$");
+	private static final Pattern ELSE = Pattern.compile("^\\s*else\\s*\\{?$");
+	private static final Pattern CONTROL = Pattern.compile("^\\s*(\\w+(?: \\w+)*)\\s*\\(.*\\).*$(?<!;)");
+	private static final Pattern OPEN_BRACKET = Pattern.compile("^.*\\{.*$");
+	private static final Pattern OPEN_BRACKET_IN_STRING = Pattern.compile("^.*\\\".*\\{.*\\\".*$");
+	private static final Pattern CLOSE_BRACKET = Pattern.compile("^.*\\}.*$");
+	private static final Pattern CLOSE_BRACKET_IN_STRING = Pattern.compile("^.*\\\".*\\}.*\\\".*$");
+	private static final Pattern SEMICOLON = Pattern.compile("^.*;.*$");
+
+	private final LineClassifier classifier = new LineClassifier();
+
+	@Test void matchesRegexesOnTestFile() throws IOException {
+		List<String> lines = Files.readAllLines(Path.of("../testfile.java"));
+		for (String line : lines) {
+			assertSameAsRegexes(line);
+		}
+	}
+
+	@Test void matchesRegexesOnTrickyLines() {
+		String[] lines = {
+			"", "   ", "\t", "// comment", "  /* begin", "end */ x", "*/",
+			"public static void main(String args[]) {",
+			"	private int count(List<String> names, int limit) {",
+			"  foo();", "\t\tfoo();", "  x = new Foo();", "  x = new  Foo();", "newer  Foo()",
+			"void a(int b,int c)", "void a(int b, int c) throws X {", "void a(int  b ,  int c)",
+			"int f (Map<K, V> m)", "Foo<T> make( )", "a b(c d,)", "  x(a b c d)",
+			"else", "  else {", "else { ", "elsewhere", "} else {",
+			"if (x) {", "else if (a == b)", "for(;;)", "while (x);", "if (x) y();", "a  b (c)",
+			"String s = \"{\";", "x = \"a\" + '{' + \"b\";", "\"}\" }", "{ \"}\"",
+			"\u00A0void\u2003f(int\u3000x)", "int  f(int x) /* { */",
+		};
+		for (String line : lines) {
+			assertSameAsRegexes(line);
+		}
+	}
+
+	@Test void matchesRegexesOnRandomLines() {
+		String alphabet = "ab new  \t(),<>{}\";/*=.else if";
+		Random random = new Random(42);
+		for (int n = 0; n < 20000; n++) {
+			StringBuilder line = new StringBuilder();
+			int length = random.nextInt(24);
+			for (int i = 0; i < length; i++) {
+				line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			assertSameAsRegexes(line.toString());
+		}
+	}
+
+	private void assertSameAsRegexes(String line) {
+		classifier.classify(line);
+		assertEquals(matches(SINGLE_COMMENT, line), classifier.isSingleLineComment(), "single comment: "+line);
+		assertEquals(matches(MULTI_COMMENT_BEGIN, line), classifier.isMultiCommentBegin(), "comment begin: "+line);
+		assertEquals(matches(MULTI_COMMENT_END, line), classifier.isMultiCommentEnd(), "comment end: "+line);
+		assertEquals(matches(WHITESPACE, line), classifier.isWhitespace(), "whitespace: "+line);
+		assertEquals(matches(ELSE, line), classifier.isElse(), "else: "+line);
+		assertEquals(matches(SEMICOLON, line), classifier.hasSemicolon(), "semicolon: "+line);
+		assertEquals(matches(OPEN_BRACKET, line) && !matches(OPEN_BRACKET_IN_STRING, line), classifier.hasOpeningBracket(), "open bracket: "+line);
+		assertEquals(matches(CLOSE_BRACKET, line) && !matches(CLOSE_BRACKET_IN_STRING, line), classifier.hasClosingBracket(), "close bracket: "+line);
+
+		Matcher method = METHOD.matcher(line);
+		assertEquals(method.matches(), classifier.isMethod(), "method: "+line);
+		if (classifier.isMethod()) {
+			assertEquals(method.group(1), classifier.methodName(), "method name: "+line);
+		}
+
+		Matcher control = CONTROL.matcher(line);
+		assertEquals(control.matches(), classifier.isControlStructure(), "control: "+line);
+		if (classifier.isControlStructure()) {
+			assertEquals(control.group(1), classifier.controlName(), "control name: "+line);
+		}
+	}
+
+	private static boolean matches(Pattern pattern, String line) {
+		return pattern.matcher(line).matches();
+	}
+}
@@ -0,0 +1,66 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class LineCounterListenerTest {
+	@Test void eventsAddUpToTheResults() {
+		int[] lines = new int[2]; //non-code, code
+		int[] methods = new int[2]; //found, closed
+		CountTable controls = new CountTable();
+		CountTable methodLines = new CountTable();
+
+		LineCounter counter = new LineCounter();
+		counter.setListener(new LineCounterListener() {
+			@Override public void methodFound(String name, int startLine) {
+				methods[0]++;
+			}
+			@Override public void methodClosed(String name, int startLine, int endLine, int codeLines) {
+				methods[1]++;
+				methodLines.put(name, codeLines);
+			}
+			@Override public void controlFound(String type) {
+				controls.increment(controls.intern(type));
+			}
+			@Override public void lineClassified(int line, boolean code) {
+				assertEquals(lines[0] + lines[1] + 1, line);
+				lines[code ? 1 : 0]++;
+			}
+		});
+		counter.analyzeFile(new File("../testfile.java"));
+
+		assertEquals(counter.nonCodeLines, lines[0]);
+		assertEquals(counter.linecount, lines[1]);
+		assertEquals(counter.methods.size(), methods[0]);
+		assertEquals(counter.methods.size(), methods[1]);
+		assertEquals(counter.controlCounts, controls);
+		assertEquals(counter.methods.get(0, MethodSpans.CODE_LINES), methodLines.get(counter.methods.name(0)));
+	}
+
+	@Test void interruptStopsReadingEarly() {
+		String source = "int x;\n".repeat(100000);
+		long[] progress = new long[2];
+		LineCounter counter = new LineCounter();
+		counter.setListener(new LineCounterListener() {
+			@Override public void progress(long bytesRead, long bytesTotal) {
+				progress[0] = bytesRead;
+				progress[1] = bytesTotal;
+			}
+		});
+
+		Thread.currentThread().interrupt();
+		try {
+			counter.analyzeBytes(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+		} finally {
+			assertTrue(Thread.interrupted());
+		}
+		assertTrue(counter.linecount < 100000);
+		assertEquals(source.length(), progress[1]);
+		assertTrue(progress[0] < progress[1]);
+	}
+}
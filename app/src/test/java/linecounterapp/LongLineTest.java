@@ -0,0 +1,46 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class LongLineTest {
+	@Test void longLinesOnlyKeepTrackOfBraces() {
+		StringBuilder generated = new StringBuilder("\tstatic final int[] TABLE = {");
+		for (int i = 0; i < 5000; i++) {
+			generated.append(i).append(", ");
+		}
+		generated.append("};");
+		String source = "class A {\n"
+				+ generated + "\n"
+				+ "\tvoid a() {\n"
+				+ "\t\tif (x) {\n"
+				+ "\t\t\tint[] t = {" + "1, ".repeat(5000) + "}; if (y) { z(); }\n"
+				+ "\t\t}\n"
+				+ "\t}\n"
+				+ "}\n";
+
+		LineCounter counter = new LineCounter();
+		counter.setMaxLineLength(1000);
+		String summary = counter.analyzeBytes(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(2, counter.longLines);
+		assertTrue(summary.contains("Long Lines (not checked for methods or control structures): 2"));
+		assertEquals(8, counter.linecount);
+		assertEquals(1, counter.methods.size());
+		assertEquals(4, counter.methods.get(0, MethodSpans.CODE_LINES));
+		assertEquals(1, counter.controlCounts.get("if"));
+	}
+
+	@Test void pathologicalHeadersTakeLinearTime() {
+		String line = "\tvoid f(" + "List<Map<String, Integer>> a, ".repeat(40000) + "{";
+		LineClassifier classifier = new LineClassifier();
+		long start = System.nanoTime();
+		classifier.classify(line);
+		assertFalse(classifier.isMethod());
+		assertTrue(System.nanoTime() - start < 2_000_000_000L);
+	}
+}
@@ -0,0 +1,77 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MethodIndexTest {
+	@TempDir
+	Path root;
+
+	@Test void queriesMatchTheAnalyzedTree() throws IOException {
+		Files.copy(new File("../testfile.java").toPath(), root.resolve("One.java"));
+		Files.writeString(root.resolve("Two.java"), "class Two {\n\tvoid x() {\n\t\tswitch (y) {\n\t\t}\n\t\tswitch (z) {\n\t\t}\n\t}\n}\n");
+		MethodIndex.Builder builder = new MethodIndex.Builder();
+		LineCounter total = new DirectoryAnalyzer().analyzeDirectory(root.toFile(), builder::put);
+		Path file = root.resolve("methods.idx");
+		builder.write(file);
+		MethodIndex index = MethodIndex.open(file);
+
+		assertEquals(total.methods.size(), index.methodCount());
+		int[] longest = total.longestMethods(5);
+		for (int i = 0; i < longest.length; i++) {
+			assertEquals(total.methods.get(longest[i], MethodSpans.CODE_LINES), index.codeLines(i));
+		}
+		assertEquals(total.methodsOver(3).length, index.countAtLeast(3));
+		for (int method = 0; method < index.countAtLeast(3); method++) {
+			assertTrue(index.codeLines(method) >= 3);
+		}
+		assertEquals(0, index.countAtLeast(Integer.MAX_VALUE));
+
+		int from = index.fromControl("switch");
+		assertEquals("Two.java", index.controlFile(from));
+		assertEquals(2, index.controlCount(from));
+		int used = 0;
+		for (int control = from; control < index.toControl("switch"); control++) {
+			used += index.controlCount(control);
+		}
+		assertEquals(total.controlCounts.get("switch"), used);
+		assertEquals(index.fromControl("goto"), index.toControl("goto"));
+	}
+
+	@Test void updateReplacesOnlyChangedFiles() throws IOException {
+		Path file = root.resolve("methods.idx");
+		MethodIndex.Builder update = new MethodIndex.Builder();
+		update.put("A.java", analyze("class A {\n\tvoid a() {\n\t\tif (x) {\n\t\t}\n\t}\n}\n"));
+		update.put("B.java", analyze("class B {\n\tvoid b() {\n\t\tb();\n\t}\n}\n"));
+		update.write(file);
+
+		update.put("A.java", analyze("class A {\n\tvoid longer() {\n\t\ta();\n\t\ta();\n\t\ta();\n\t}\n}\n"));
+		update.remove("B.java");
+		update.put("C.java", analyze("class C {\n\tvoid c() {\n\t\tif (x) {\n\t\t}\n\t\tif (y) {\n\t\t}\n\t}\n}\n"));
+		update.write(file);
+
+		MethodIndex index = MethodIndex.open(file);
+		assertEquals(2, index.methodCount());
+		assertEquals("C.java: c()", index.methodName(0));
+		assertEquals("A.java: longer()", index.methodName(1));
+		assertEquals(4, index.codeLines(1)); //the closing brace counts
+		assertEquals(2, index.startLine(1));
+		assertEquals(6, index.endLine(1));
+		assertEquals(1, index.toControl("if") - index.fromControl("if"));
+		assertEquals("C.java", index.controlFile(index.fromControl("if")));
+	}
+
+	private LineCounter analyze(String source) throws IOException {
+		Path file = Files.writeString(root.resolve("Source.java"), source);
+		LineCounter counter = new LineCounter();
+		counter.analyzeFile(file.toFile());
+		return counter;
+	}
+}
@@ -0,0 +1,92 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class MethodSpansTest {
+	private static final String SOURCE = "class A {\n"
+			+ "\tint f(int x) {\n"
+			+ "\t\treturn x;\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tint f(String s) {\n"
+			+ "\t\tif (s == null) {\n"
+			+ "\t\t\treturn 0;\n"
+			+ "\t\t}\n"
+			+ "\t\treturn 1;\n"
+			+ "\t}\n"
+			+ "}\n";
+
+	@Test void overloadsKeepTheirOwnSpans() {
+		LineCounter counter = analyze(SOURCE);
+		MethodSpans methods = counter.methods;
+
+		assertEquals(2, methods.size());
+		assertEquals("f(int x)", methods.name(0));
+		assertEquals(2, methods.get(0, MethodSpans.START_LINE));
+		assertEquals(4, methods.get(0, MethodSpans.END_LINE));
+		assertEquals(2, methods.get(0, MethodSpans.CODE_LINES));
+		assertEquals(1, methods.get(0, MethodSpans.DEPTH));
+
+		assertEquals("f(String s)", methods.name(1));
+		assertEquals(6, methods.get(1, MethodSpans.START_LINE));
+		assertEquals(11, methods.get(1, MethodSpans.END_LINE));
+		assertEquals(5, methods.get(1, MethodSpans.CODE_LINES));
+		assertEquals(2, methods.get(1, MethodSpans.DEPTH));
+	}
+
+	@Test void longestAndThresholdQueries() {
+		MethodSpans methods = new MethodSpans();
+		int[] lengths = {4, 9, 1, 7, 9, 3};
+		for (int i = 0; i < lengths.length; i++) {
+			int span = methods.add(methods.names.intern("m"+i+"()"), 1);
+			methods.close(span, lengths[i] + 1, lengths[i], 1);
+		}
+
+		int[] longest = methods.longest(3);
+		assertEquals(3, longest.length);
+		assertEquals(9, methods.get(longest[0], MethodSpans.CODE_LINES));
+		assertEquals(9, methods.get(longest[1], MethodSpans.CODE_LINES));
+		assertEquals(7, methods.get(longest[2], MethodSpans.CODE_LINES));
+		assertEquals(6, methods.longest(10).length);
+
+		assertEquals(4, methods.atLeast(4).length);
+		assertEquals(0, methods.atLeast(10).length);
+	}
+
+	@Test void removedSourcesLeaveTheRestAndTheirNamesGo() {
+		LineCounter[] files = new LineCounter[100];
+		LineCounter total = new LineCounter();
+		for (int i = 0; i < files.length; i++) {
+			files[i] = analyze(SOURCE);
+			files[i].qualifyMethods("F"+i+".java");
+			total.merge(files[i]);
+		}
+
+		LineCounter kept = new LineCounter();
+		for (int i = 0; i < files.length; i++) {
+			if (i % 10 == 3) {
+				kept.merge(files[i]);
+			}
+			else {
+				total.subtract(files[i]);
+			}
+		}
+		total.merge(files[0]); //after the source names were compacted
+		kept.merge(files[0]);
+
+		assertEquals(CounterTables.methodTable(kept), CounterTables.methodTable(total));
+		assertEquals(11, total.methods.sources.size());
+		assertTrue(total.methods.sources.ids() <= 2 * 11 + 16);
+	}
+
+	private static LineCounter analyze(String source) {
+		LineCounter counter = new LineCounter();
+		counter.analyzeBytes(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+		return counter;
+	}
+}
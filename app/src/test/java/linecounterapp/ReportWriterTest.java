@@ -0,0 +1,102 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportWriterTest {
+	@TempDir
+	Path root;
+
+	@Test void textMatchesTheFormattedTables() throws IOException {
+		LineCounter counter = new LineCounter();
+		String summary = counter.analyzeFile(new File("../testfile.java"));
+
+		String expected = summary+"\n\n"
+				+CounterTables.formattedMethodTable(counter)+"\n\n"
+				+counter.formatCountHashmap("Control Type", "Count", counter.controlCounts)+"\n\n";
+		assertEquals(expected, write("text", counter, summary));
+	}
+
+	@Test void csvAndJsonEscapeNames() throws IOException {
+		LineCounter counter = new LineCounter();
+		int span = counter.methods.add(counter.methods.names.intern("f(Map<K, V> \"m\")"), 1);
+		counter.methods.close(span, 3, 2, 1);
+
+		String csv = write("csv", counter, "");
+		assertTrue(csv.contains("\nA.java,methods,\"f(Map<K, V> \"\"m\"\")\",2\n"));
+
+		String json = write("jsonl", counter, "");
+		assertTrue(json.contains("{\"path\":\"A.java\",\"table\":\"methods\",\"method\":\"f(Map<K, V> \\\"m\\\")\",\"lines\":2}\n"));
+	}
+
+	@Test void binaryCanBeReadBack() throws IOException {
+		LineCounter counter = new LineCounter();
+		counter.analyzeFile(new File("../testfile.java"));
+		byte[] bytes = write("binary", counter, "").getBytes(StandardCharsets.ISO_8859_1);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		assertEquals(BinaryReportWriter.MAGIC, in.readInt());
+		assertEquals(BinaryReportWriter.SECTION, in.readByte());
+		assertEquals("A.java", readString(in));
+		assertEquals(1, in.readInt());
+		assertEquals(counter.linecount, in.readInt());
+		assertEquals(counter.nonCodeLines, in.readInt());
+		assertEquals(0, in.readInt());
+		assertEquals(BinaryReportWriter.TABLE, in.readByte());
+		assertEquals("methods", readString(in));
+		assertEquals(2, in.readInt());
+		readString(in);
+		readString(in);
+		int rows = 0;
+		while (in.readByte() == BinaryReportWriter.ROW) {
+			readString(in);
+			in.readInt();
+			rows++;
+		}
+		assertEquals(counter.methods.size(), rows);
+	}
+
+	@Test void dedupTableCountsTheSkippedCopies() throws IOException {
+		Path source = Path.of("../testfile.java");
+		Files.copy(source, root.resolve("One.java"));
+		Files.copy(source, root.resolve("Two.java"));
+		Files.copy(source, root.resolve("Three.java"));
+		DirectoryAnalyzer analyzer = new DirectoryAnalyzer();
+		analyzer.setDeduplicate(true);
+		analyzer.analyzeDirectory(root.toFile());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ReportWriter out = ReportWriter.forFormat("csv", Channels.newChannel(bytes), false);
+		out.section("tree", "", new LineCounter());
+		analyzer.writeDuplicates(out);
+		out.flush();
+		long kilobytes = (2 * Files.size(source) + 1023) / 1024;
+		assertTrue(bytes.toString(StandardCharsets.UTF_8).contains("\ntree,dedup,copies,2,"+kilobytes+"\n"));
+	}
+
+	private static String write(String format, LineCounter counter, String summary) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ReportWriter out = ReportWriter.forFormat(format, Channels.newChannel(bytes), false);
+		counter.writeReport(out, "A.java", summary);
+		out.flush();
+		return new String(bytes.toByteArray(), format.equals("binary") ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
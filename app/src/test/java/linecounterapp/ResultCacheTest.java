@@ -0,0 +1,105 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultCacheTest {
+	@TempDir
+	Path dir;
+
+	@Test void unchangedFilesAreReusedAfterReload() throws IOException {
+		Path source = dir.resolve("Tree.java");
+		Files.copy(Path.of("../testfile.java"), source);
+		Path cacheFile = dir.resolve("cache.bin");
+
+		ResultCache cache = ResultCache.load(cacheFile);
+		LineCounter first = cache.analyze(source);
+		cache.save();
+		assertEquals(0, cache.getHits());
+
+		cache = ResultCache.load(cacheFile);
+		LineCounter second = cache.analyze(source);
+		assertEquals(1, cache.getHits());
+		assertEquals(first.linecount, second.linecount);
+		assertEquals(first.nonCodeLines, second.nonCodeLines);
+		assertEquals(spanTable(first), spanTable(second));
+		assertEquals(first.controlCounts, second.controlCounts);
+	}
+
+	@Test void touchedFilesAreMatchedByContent() throws IOException {
+		Path source = dir.resolve("A.java");
+		Files.writeString(source, "class A {\n\tvoid a() {\n\t\tif (x) y();\n\t}\n}\n");
+		ResultCache cache = ResultCache.load(dir.resolve("cache.bin"));
+		cache.analyze(source);
+
+		Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5000));
+		cache.analyze(source);
+		assertEquals(1, cache.getHits());
+
+		Files.writeString(source, "class A {\n\tvoid b() {\n\t\tif (x) y();\n\t}\n}\n");
+		Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 10000));
+		LineCounter changed = cache.analyze(source);
+		assertEquals(2, cache.getMisses());
+		assertEquals("b()", changed.methods.name(0));
+	}
+
+	@Test void deletedFilesAreDroppedOnSave() throws IOException {
+		Path kept = dir.resolve("Kept.java");
+		Path deleted = dir.resolve("Deleted.java");
+		Files.writeString(kept, "class Kept {}\n");
+		Files.writeString(deleted, "class Deleted {}\n");
+		Path cacheFile = dir.resolve("cache.bin");
+
+		ResultCache cache = ResultCache.load(cacheFile);
+		cache.analyze(kept);
+		cache.analyze(deleted);
+		cache.save();
+
+		Files.delete(deleted);
+		cache = ResultCache.load(cacheFile);
+		cache.save();
+		assertEquals(1, ResultCache.load(cacheFile).size());
+	}
+
+	@Test void hugeFilesMatchAPlainAnalysis() throws IOException {
+		Path source = dir.resolve("Huge.java");
+		byte[] tree = Files.readAllBytes(Path.of("../testfile.java"));
+		try (OutputStream out = Files.newOutputStream(source)) {
+			for (long written = 0; written < ChunkedFileAnalyzer.MIN_SIZE; written += tree.length) {
+				out.write(tree);
+			}
+		}
+		LineCounter plain = new LineCounter();
+		plain.analyzeFile(source.toFile());
+
+		ResultCache cache = ResultCache.load(dir.resolve("cache.bin"));
+		LineCounter cached = cache.analyze(source);
+		assertEquals(1, cache.getMisses());
+		assertEquals(plain.getSummary(), cached.getSummary());
+		assertEquals(plain.controlCounts, cached.controlCounts);
+		assertEquals(spanTable(plain), spanTable(cached));
+
+		Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5000));
+		cache.analyze(source);
+		assertEquals(1, cache.getHits());
+	}
+
+	private static String spanTable(LineCounter counter) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ReportWriter out = ReportWriter.forFormat("text", Channels.newChannel(bytes), false);
+		counter.writeMethodSpans(out, "methods", null, counter.methodsOver(0));
+		out.flush();
+		return bytes.toString(StandardCharsets.UTF_8);
+	}
+}
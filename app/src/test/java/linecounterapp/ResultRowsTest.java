@@ -0,0 +1,43 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ResultRowsTest {
+	@Test void indexSortIsStable() {
+		Random random = new Random(7);
+		int[] keys = new int[1001];
+		int[] rows = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextInt(20);
+			rows[i] = i;
+		}
+
+		ResultRows.sortIndices(rows, (a, b) -> Integer.compare(keys[a], keys[b]));
+
+		for (int i = 1; i < rows.length; i++) {
+			int previous = rows[i-1], row = rows[i];
+			assertTrue(keys[previous] < keys[row] || (keys[previous] == keys[row] && previous < row));
+		}
+	}
+
+	@Test void rowsKeepTheirValues() {
+		ResultRows rows = new ResultRows();
+		for (int i = 0; i < 200; i++) {
+			assertEquals(i, rows.add("m"+i+"()", i * 3));
+		}
+		rows.setCount(5, 1);
+		rows.showNew();
+		rows.add("late()", 7);
+		rows.setCount(150, 2); //shown
+		rows.setCount(200, 8); //not shown yet
+		assertEquals(201, rows.size());
+		assertEquals("m150()", rows.name(150));
+		assertEquals(2, rows.count(150));
+		assertEquals(1, rows.count(5));
+		assertEquals(8, rows.count(200));
+	}
+}
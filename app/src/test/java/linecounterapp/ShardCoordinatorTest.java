@@ -0,0 +1,96 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShardCoordinatorTest {
+	@TempDir
+	Path root;
+
+	@Test void shardsMergeToTheSameResultAsOneProcess() throws IOException {
+		Path source = new File("../testfile.java").toPath();
+		for (int i = 0; i < 7; i++) {
+			Files.createDirectories(root.resolve("p"+i));
+			Files.copy(source, root.resolve("p"+i+"/F"+i+".java"));
+		}
+
+		LineCounter sharded = new ShardCoordinator(3).analyzeDirectory(root.toFile());
+		LineCounter single = new DirectoryAnalyzer().analyzeDirectory(root.toFile());
+
+		assertEquals(single.getSummary(), sharded.getSummary());
+		assertEquals(single.controlCounts, sharded.controlCounts);
+		assertEquals(CounterTables.methodTable(single), CounterTables.methodTable(sharded));
+	}
+
+	@Test void spilledShardsGiveTheSameReport() throws IOException {
+		Path source = new File("../testfile.java").toPath();
+		for (int i = 0; i < 7; i++) {
+			Files.copy(source, root.resolve("F"+i+".java"));
+		}
+		Files.writeString(root.resolve("failed-once"), "");
+		String expected = CounterTables.textReport(new DirectoryAnalyzer().analyzeDirectory(root.toFile()), null);
+
+		//one shard fails after sending its results, which the retry mustn't add again
+		SpillingAggregator spilling = new SpillingAggregator(1, root);
+		ShardCoordinator coordinator = new ShardCoordinator(3);
+		coordinator.workerClass = FailingAfterResultsWorker.class.getName();
+		coordinator.setWorkerOptions(List.of("-Dmarker="+root.resolve("failed-once")));
+		LineCounter totals = coordinator.analyzeDirectory(root.toFile(), spilling::add);
+
+		assertFalse(Files.exists(root.resolve("failed-once")));
+		assertEquals(0, totals.methods.size());
+		assertEquals(expected, CounterTables.textReport(totals, spilling));
+	}
+
+	@Test void failedShardsAreRetried() throws IOException {
+		Files.writeString(root.resolve("A.java"), "class A {\n\tvoid a() {\n\t\tif (x) {\n\t\t}\n\t}\n}\n");
+		Files.writeString(root.resolve("failed-once"), "");
+
+		ShardCoordinator coordinator = new ShardCoordinator(1);
+		coordinator.workerClass = FlakyWorker.class.getName();
+		coordinator.setWorkerOptions(List.of("-Dmarker="+root.resolve("failed-once")));
+		LineCounter counter = coordinator.analyzeDirectory(root.toFile());
+		assertEquals(1, counter.controlCounts.get("if"));
+
+		coordinator.setRetries(0);
+		Files.writeString(root.resolve("failed-once"), "");
+		assertThrows(IOException.class, () -> coordinator.analyzeDirectory(root.toFile()));
+	}
+
+	/**
+	 * Dies without a result if the file named by the marker property exists, deleting it.
+	 */
+	static class FlakyWorker {
+		public static void main(String[] args) throws IOException {
+			if (Files.deleteIfExists(Path.of(System.getProperty("marker")))) {
+				System.exit(3);
+			}
+			ShardWorker.main(args);
+		}
+	}
+
+	/**
+	 * Sends its whole result, then fails if the file named by the marker property exists, deleting it.
+	 */
+	static class FailingAfterResultsWorker {
+		public static void main(String[] args) throws IOException {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+			ShardWorker.run(new DataInputStream(new BufferedInputStream(System.in)), out);
+			System.exit(Files.deleteIfExists(Path.of(System.getProperty("marker"))) ? 3 : 0);
+		}
+	}
+}
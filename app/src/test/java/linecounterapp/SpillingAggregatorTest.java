@@ -0,0 +1,68 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpillingAggregatorTest {
+	@TempDir
+	Path root;
+
+	@Test void spilledReportMatchesInMemoryReport() throws IOException {
+		Path source = new File("../testfile.java").toPath();
+		for (String folder : new String[] {"a", "b", "b/c", "d"}) {
+			Files.createDirectories(root.resolve(folder));
+			Files.copy(source, root.resolve(folder).resolve("Same.java"));
+		}
+		Files.writeString(root.resolve("b/Other.java"), "class Other {\n\tvoid x() {\n\t\tswitch (y) {\n\t\t}\n\t}\n\tvoid x(int a) {\n\t}\n}\n");
+		Files.writeString(root.resolve("d/Empty.java"), "");
+
+		LineCounter inMemory = new DirectoryAnalyzer().analyzeDirectory(root.toFile());
+		String expected = CounterTables.textReport(inMemory, null);
+
+		for (long budget : new long[] {1, 4096, Long.MAX_VALUE}) {
+			for (int mergeWidth : new int[] {2, 64}) {
+				SpillingAggregator spilling = new SpillingAggregator(budget, root);
+				spilling.setMergeWidth(mergeWidth);
+				DirectoryAnalyzer analyzer = new DirectoryAnalyzer();
+				analyzer.setKeepDetails(false);
+				LineCounter totals = analyzer.analyzeDirectory(root.toFile(), spilling);
+
+				assertEquals(expected, CounterTables.textReport(totals, spilling), "budget "+budget+", merge width "+mergeWidth);
+				assertEquals(budget == 1, spilling.getSpills() >= 6);
+			}
+		}
+		try (Stream<Path> left = Files.list(root)) {
+			assertTrue(left.noneMatch(path -> path.getFileName().toString().startsWith("linecounter-run")));
+		}
+	}
+
+	@Test void spilledControlsMatchInMemoryControls() throws IOException {
+		//a call that goes on over the next line counts as a control, so files with many different calls fill the budget with control types alone
+		for (int file = 0; file < 12; file++) {
+			StringBuilder source = new StringBuilder("class F"+file+" {\n\tvoid f() {\n");
+			for (int call = 0; call < 40; call++) {
+				source.append("\t\tif (x) {\n\t\t}\n\t\tcall").append((file * 7 + call) % 100).append("(x)\n\t\t\t.run();\n"); //files share some calls
+			}
+			Files.writeString(root.resolve("F"+file+".java"), source.append("\t}\n}\n"));
+		}
+
+		LineCounter inMemory = new DirectoryAnalyzer().analyzeDirectory(root.toFile());
+		assertTrue(inMemory.controlCounts.size() > 90);
+		SpillingAggregator spilling = new SpillingAggregator(2000, root); //more than the methods of every file take
+		spilling.setMergeWidth(2);
+		DirectoryAnalyzer analyzer = new DirectoryAnalyzer();
+		analyzer.setKeepDetails(false);
+		LineCounter totals = analyzer.analyzeDirectory(root.toFile(), spilling);
+
+		assertEquals(CounterTables.textReport(inMemory, null), CounterTables.textReport(totals, spilling));
+		assertTrue(spilling.getSpills() >= 6);
+	}
+}
@@ -0,0 +1,93 @@
+package linecounterapp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StreamingSummaryTest {
+	@TempDir
+	Path root;
+
+	@Test void sketchKeepsHeavyHittersWithinTheirError() {
+		SpaceSaving sketch = new SpaceSaving(16);
+		HashMap<String, Integer> exact = new HashMap<String, Integer>();
+		Random random = new Random(7);
+		for (int i = 0; i < 100000; i++) {
+			//a few common names among many rare ones, like control structures among calls
+			String name = random.nextInt(4) == 0 ? "rare"+random.nextInt(5000) : "common"+(int)Math.sqrt(random.nextInt(36));
+			sketch.add(name);
+			exact.merge(name, 1, Integer::sum);
+		}
+
+		int[] frequent = sketch.mostFrequent();
+		assertEquals(16, frequent.length);
+		for (int i = 0; i < 6; i++) {
+			int slot = frequent[i];
+			assertTrue(sketch.name(slot).startsWith("common"), sketch.name(slot));
+			long real = exact.get(sketch.name(slot));
+			assertTrue(sketch.count(slot) >= real && sketch.count(slot) - sketch.error(slot) <= real);
+		}
+	}
+
+	@Test void quantilesAreWithinTheirBucket() {
+		LengthHistogram histogram = new LengthHistogram();
+		int[] values = new int[10001];
+		Random random = new Random(3);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (int)Math.abs(random.nextGaussian() * 2000);
+			histogram.add(values[i]);
+		}
+		Arrays.sort(values);
+		for (double q : new double[] {0.01, 0.5, 0.9, 0.99, 1}) {
+			int real = values[(int)Math.ceil(q * values.length) - 1];
+			int estimate = histogram.quantile(q);
+			assertTrue(estimate <= real && real - estimate <= real / 64, q+": "+estimate+" for "+real);
+		}
+		assertEquals(values[0], histogram.min());
+		assertEquals(values[values.length - 1], histogram.max());
+	}
+
+	@Test void summaryOfATreeMatchesItsFullResult() throws IOException {
+		Path source = new File("../testfile.java").toPath();
+		Files.createDirectories(root.resolve("a"));
+		Files.copy(source, root.resolve("a/One.java"));
+		Files.copy(source, root.resolve("Two.java"));
+
+		LineCounter full = new DirectoryAnalyzer().analyzeDirectory(root.toFile());
+		StreamingSummary summary = new StreamingSummary(3);
+		DirectoryAnalyzer analyzer = new DirectoryAnalyzer();
+		analyzer.setListener(summary);
+		analyzer.setKeepDetails(false);
+		LineCounter totals = analyzer.analyzeDirectory(root.toFile());
+
+		assertEquals(full.getSummary(), totals.getSummary());
+		assertEquals(0, totals.methods.size());
+		assertEquals(full.methods.size(), summary.methodCount());
+
+		StringBuilder expected = new StringBuilder();
+		for (int span : full.longestMethods(3)) {
+			expected.append(full.methods.get(span, MethodSpans.CODE_LINES)).append('\n');
+		}
+		StringBuilder longest = new StringBuilder();
+		summary.writeReport(new ReportWriter() {
+			private String table;
+			@Override public void section(String path, String summary, LineCounter counter) {}
+			@Override public void beginTable(String table, String title, String... columns) { this.table = table; }
+			@Override public void row(String name, int... values) {
+				if (table.equals("longest")) longest.append(values[0]).append('\n');
+			}
+			@Override public void endTable() {}
+			@Override public void flush() {}
+		});
+		assertEquals(expected.toString(), longest.toString());
+	}
+}